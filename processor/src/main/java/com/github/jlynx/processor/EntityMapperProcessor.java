@@ -0,0 +1,270 @@
+package com.github.jlynx.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a <code>com.github.jlynx.EntityMapper</code> for every class
+ * annotated with <code>com.github.jlynx.Table</code>, applying the same field
+ * rules as jLynx at runtime (<code>@Column</code>, <code>@Exclude</code>,
+ * <code>@Id</code>, no arrays, Collections or interfaces other than LOB locators). Classes with fields the generated code
+ * cannot access (e.g. private or final) are skipped and use reflection.
+ */
+@SupportedAnnotationTypes(EntityMapperProcessor.TABLE)
+public class EntityMapperProcessor extends AbstractProcessor {
+
+  static final String TABLE = "com.github.jlynx.Table";
+  static final String COLUMN = "com.github.jlynx.Column";
+  static final String EXCLUDE = "com.github.jlynx.Exclude";
+  static final String ID = "com.github.jlynx.Id";
+  static final String SUFFIX = "_JLynxMapper";
+  // LOB locators, the only interfaces mapped
+  static final Set<String> LOCATORS = new HashSet<>(
+      Arrays.asList("java.sql.Blob", "java.sql.Clob", "java.sql.NClob"));
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+    for (TypeElement annotation : annotations)
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+        if (element.getKind() == ElementKind.CLASS)
+          generate((TypeElement) element);
+
+    return false;
+  }
+
+  private void generate(TypeElement entity) {
+
+    String reason = checkType(entity);
+    List<VariableElement> fields = new ArrayList<>();
+    if (reason == null)
+      reason = collectFields(entity, fields);
+
+    if (reason != null) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+          "jLynx mapper not generated, reflection is used: " + reason, entity);
+      return;
+    }
+
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+    String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+    String mapperName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+        + SUFFIX;
+    String entityName = entity.getQualifiedName().toString();
+
+    StringBuilder src = new StringBuilder();
+    if (!packageName.isEmpty())
+      src.append("package ").append(packageName).append(";\n\n");
+    src.append("// generated by ").append(getClass().getName()).append(", do not edit\n")
+        .append("public final class ").append(mapperName).append(" implements com.github.jlynx.EntityMapper<")
+        .append(entityName).append("> {\n\n");
+
+    src.append("  private static final String[] PROPERTIES = {");
+    for (int i = 0; i < fields.size(); i++)
+      src.append(i == 0 ? " " : ", ").append(literal(fields.get(i).getSimpleName().toString()));
+    src.append(" };\n");
+
+    src.append("  private static final String[] COLUMNS = {");
+    for (int i = 0; i < fields.size(); i++)
+      src.append(i == 0 ? " " : ", ").append(literal(getColumn(fields.get(i))));
+    src.append(" };\n");
+
+    src.append("  private static final String[] KEYS = {");
+    String separator = " ";
+    for (VariableElement field : fields)
+      if (hasAnnotation(field, ID)) {
+        src.append(separator).append(literal(getColumn(field)));
+        separator = ", ";
+      }
+    src.append(" };\n");
+
+    src.append("  private static final Class<?>[] TYPES = {");
+    for (int i = 0; i < fields.size(); i++)
+      src.append(i == 0 ? " " : ", ").append(erasure(fields.get(i).asType())).append(".class");
+    src.append(" };\n\n");
+
+    src.append("  @Override\n  public Class<").append(entityName).append("> type() {\n    return ").append(entityName)
+        .append(".class;\n  }\n\n");
+    src.append("  @Override\n  public String[] properties() {\n    return PROPERTIES.clone();\n  }\n\n");
+    src.append("  @Override\n  public String[] columns() {\n    return COLUMNS.clone();\n  }\n\n");
+    src.append("  @Override\n  public Class<?>[] types() {\n    return TYPES.clone();\n  }\n\n");
+    src.append("  @Override\n  public String[] keys() {\n    return KEYS.clone();\n  }\n\n");
+    src.append("  @Override\n  public ").append(entityName).append(" newInstance() {\n    return new ").append(entityName)
+        .append("();\n  }\n\n");
+
+    src.append("  @Override\n  public Object get(").append(entityName).append(" bean, int index) {\n    switch (index) {\n");
+    for (int i = 0; i < fields.size(); i++)
+      src.append("      case ").append(i).append(":\n        return bean.").append(fields.get(i).getSimpleName())
+          .append(";\n");
+    src.append("      default:\n        throw new IndexOutOfBoundsException(String.valueOf(index));\n    }\n  }\n\n");
+
+    src.append("  @Override\n  public void set(").append(entityName).append(" bean, int index, Object value) {\n")
+        .append("    switch (index) {\n");
+    for (int i = 0; i < fields.size(); i++)
+      src.append("      case ").append(i).append(":\n        bean.").append(fields.get(i).getSimpleName())
+          .append(" = ").append(cast(fields.get(i).asType())).append(";\n        return;\n");
+    src.append("      default:\n        throw new IndexOutOfBoundsException(String.valueOf(index));\n    }\n  }\n\n");
+    src.append("}\n");
+
+    try {
+      String fileName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+      try (Writer writer = processingEnv.getFiler().createSourceFile(fileName, entity).openWriter()) {
+        writer.write(src.toString());
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), entity);
+    }
+  }
+
+  // the generated class lives in the entity's package and creates instances
+  private String checkType(TypeElement entity) {
+
+    Set<Modifier> modifiers = entity.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT))
+      return "class is private or abstract";
+    if (!entity.getTypeParameters().isEmpty())
+      return "class is generic";
+    if (entity.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC))
+      return "inner class is not static";
+    if (entity.getNestingKind() == NestingKind.LOCAL || entity.getNestingKind() == NestingKind.ANONYMOUS)
+      return "local class";
+
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements()))
+      if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+        return null;
+    return "no accessible no-arg constructor";
+  }
+
+  // same order and rules as BeanUtil#getFields, subclass fields first
+  private String collectFields(TypeElement entity, List<VariableElement> fields) {
+
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+    TypeElement type = entity;
+
+    while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+
+      boolean samePackage = processingEnv.getElementUtils().getPackageOf(type).equals(pkg);
+
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || hasAnnotation(field, EXCLUDE) || isSkippedType(field.asType()))
+          continue;
+
+        if (modifiers.contains(Modifier.PRIVATE) || !samePackage && !modifiers.contains(Modifier.PUBLIC))
+          return "field " + type.getSimpleName() + "#" + field.getSimpleName() + " is not accessible";
+        if (modifiers.contains(Modifier.FINAL))
+          return "field " + type.getSimpleName() + "#" + field.getSimpleName() + " is final";
+
+        fields.add(field);
+      }
+
+      TypeMirror superclass = type.getSuperclass();
+      type = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    return null;
+  }
+
+  private boolean isSkippedType(TypeMirror type) {
+    if (type.getKind() == TypeKind.ARRAY)
+      return true;
+    if (type.getKind() != TypeKind.DECLARED)
+      return false;
+    if (((DeclaredType) type).asElement().getKind() == ElementKind.INTERFACE)
+      return !LOCATORS.contains(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+    TypeMirror collection = processingEnv.getTypeUtils()
+        .erasure(processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+    return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), collection);
+  }
+
+  private String getColumn(VariableElement field) {
+    for (AnnotationMirror mirror : field.getAnnotationMirrors())
+      if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(COLUMN))
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+            .getElementValues().entrySet())
+          if (entry.getKey().getSimpleName().contentEquals("value"))
+            return entry.getValue().getValue().toString();
+    return field.getSimpleName().toString().toUpperCase();
+  }
+
+  private static boolean hasAnnotation(Element element, String annotation) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors())
+      if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+        return true;
+    return false;
+  }
+
+  private String erasure(TypeMirror type) {
+    return processingEnv.getTypeUtils().erasure(type).toString();
+  }
+
+  // cast from Object, none for Object fields; primitives accept any Number, as
+  // widening in Field#set
+  private String cast(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return "(Boolean) value";
+      case CHAR:
+        return "(Character) value";
+      case BYTE:
+        return "((Number) value).byteValue()";
+      case SHORT:
+        return "((Number) value).shortValue()";
+      case INT:
+        return "((Number) value).intValue()";
+      case LONG:
+        return "((Number) value).longValue()";
+      case FLOAT:
+        return "((Number) value).floatValue()";
+      case DOUBLE:
+        return "((Number) value).doubleValue()";
+      default:
+        String erasure = erasure(type);
+        return "java.lang.Object".equals(erasure) ? "value" : "(" + erasure + ") value";
+    }
+  }
+
+  private static String literal(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : value.toCharArray())
+      if (c == '"' || c == '\\')
+        sb.append('\\').append(c);
+      else
+        sb.append(c);
+    return sb.append('"').toString();
+  }
+
+}
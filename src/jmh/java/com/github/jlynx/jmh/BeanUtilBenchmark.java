@@ -0,0 +1,44 @@
+package com.github.jlynx.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.jlynx.BeanUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Case-insensitive property access by name, as used for generated keys and
+ * imports.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanUtilBenchmark {
+
+  private final Wide wide = new Wide();
+  private final Integer value = 42;
+
+  @Benchmark
+  public Wide setValue() {
+    BeanUtil.setValue("c28", wide, value);
+    return wide;
+  }
+
+  @Benchmark
+  public Wide setValueFromString() {
+    BeanUtil.setValueFromString(wide, "c28", "42");
+    return wide;
+  }
+
+}
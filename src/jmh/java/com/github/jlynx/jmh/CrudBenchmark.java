@@ -0,0 +1,89 @@
+package com.github.jlynx.jmh;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.jlynx.DAOFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-row insert, select, update and save by primary key, for a 3 and a 31
+ * column table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrudBenchmark {
+
+  private static final int ROWS = 1000;
+
+  @Param({ Tables.NARROW, Tables.WIDE })
+  public String width;
+
+  private DAOFactory factory;
+  private Object[] rows;
+  private Object newRow;
+  private int next;
+  private int insertId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    factory = Tables.create();
+    rows = new Object[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      rows[i] = Tables.newRow(width, i);
+      factory.insert(rows[i]);
+    }
+    newRow = Tables.newRow(width, ROWS);
+    insertId = ROWS;
+  }
+
+  private Object nextRow() {
+    next = (next + 1) % ROWS;
+    return rows[next];
+  }
+
+  @Benchmark
+  public int insert() throws SQLException {
+    Tables.setId(newRow, insertId++);
+    return factory.insert(newRow);
+  }
+
+  @Benchmark
+  public boolean select() throws SQLException {
+    next = (next + 1) % ROWS;
+    return factory.select(Tables.newKey(width, next));
+  }
+
+  @Benchmark
+  public int update() throws SQLException {
+    return factory.update(nextRow());
+  }
+
+  @Benchmark
+  public int saveExisting() throws SQLException {
+    return factory.save(nextRow());
+  }
+
+  @Benchmark
+  public int saveNew() throws SQLException {
+    Tables.setId(newRow, insertId++);
+    return factory.save(newRow);
+  }
+
+}
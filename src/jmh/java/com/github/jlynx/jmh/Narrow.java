@@ -0,0 +1,14 @@
+package com.github.jlynx.jmh;
+
+import com.github.jlynx.Id;
+import com.github.jlynx.Table;
+
+@Table("NARROW")
+public class Narrow {
+
+  @Id
+  public Integer id;
+  public String name;
+  public Integer age;
+
+}
@@ -0,0 +1,67 @@
+package com.github.jlynx.jmh;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.jlynx.DAOFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Query result mapping: listOf creates a bean per row, forEach with a re-used
+ * bean measures the ResultSet to bean mapping alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int rows;
+
+  @Param({ Tables.NARROW, Tables.WIDE })
+  public String width;
+
+  private DAOFactory factory;
+  private Class<?> type;
+  private String sql;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    factory = Tables.create();
+    List<Object> beans = new ArrayList<>();
+    for (int i = 0; i < rows; i++)
+      beans.add(Tables.newRow(width, i));
+    factory.insertValues(beans);
+    type = Tables.type(width);
+    sql = "SELECT * FROM " + Tables.table(width);
+  }
+
+  @Benchmark
+  public List<?> listOf() throws SQLException, ReflectiveOperationException {
+    return factory.listOf(type, sql, null);
+  }
+
+  @Benchmark
+  public long mapping(Blackhole blackhole) throws SQLException, ReflectiveOperationException {
+    return factory.newDAO().forEach(type, sql, null, true, blackhole::consume);
+  }
+
+}
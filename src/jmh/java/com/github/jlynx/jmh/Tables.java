@@ -0,0 +1,76 @@
+package com.github.jlynx.jmh;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.jlynx.BeanUtil;
+import com.github.jlynx.ConnectionPool;
+import com.github.jlynx.DAOFactory;
+
+// schema and rows shared by the benchmarks
+final class Tables {
+
+  static final String NARROW = "narrow";
+  static final String WIDE = "wide";
+
+  // column type of WIDE.Cnn by n % 3, see Wide
+  private static final String[] WIDE_TYPES = { "VARCHAR(40)", "INT", "DECIMAL(12,2)" };
+
+  private static final AtomicInteger databases = new AtomicInteger();
+
+  private Tables() {
+  }
+
+  // a new in-memory database per trial, pooled so connecting is not measured
+  static DAOFactory create() throws SQLException {
+    String url = "jdbc:hsqldb:mem:jmh" + databases.incrementAndGet();
+    DAOFactory factory = DAOFactory.newInstance(ConnectionPool.shared(url, null));
+    factory.executeSql("CREATE TABLE NARROW (ID INT PRIMARY KEY, NAME VARCHAR(40), AGE INT)", null);
+    StringBuilder ddl = new StringBuilder("CREATE TABLE WIDE (ID INT PRIMARY KEY");
+    for (int n = 1; n <= 30; n++)
+      ddl.append(String.format(", C%02d %s", n, WIDE_TYPES[n % 3]));
+    factory.executeSql(ddl.append(')').toString(), null);
+    return factory;
+  }
+
+  static Object newRow(String width, int id) {
+    if (NARROW.equals(width)) {
+      Narrow narrow = new Narrow();
+      narrow.id = id;
+      narrow.name = "name" + id;
+      narrow.age = id % 100;
+      return narrow;
+    }
+    Wide wide = new Wide();
+    wide.id = id;
+    for (int n = 1; n <= 30; n++) {
+      String column = String.format("C%02d", n);
+      Object value = n % 3 == 0 ? "value" + id : n % 3 == 1 ? (Object) id : BigDecimal.valueOf(id, 2);
+      BeanUtil.setValue(column, wide, value);
+    }
+    return wide;
+  }
+
+  static Object newKey(String width, int id) {
+    Object row = NARROW.equals(width) ? new Narrow() : new Wide();
+    setId(row, id);
+    return row;
+  }
+
+  static void setId(Object row, int id) {
+    if (row instanceof Narrow)
+      ((Narrow) row).id = id;
+    else
+      ((Wide) row).id = id;
+  }
+
+  static Class<?> type(String width) {
+    return NARROW.equals(width) ? Narrow.class : Wide.class;
+  }
+
+  static String table(String width) {
+    return NARROW.equals(width) ? "NARROW" : "WIDE";
+  }
+
+}
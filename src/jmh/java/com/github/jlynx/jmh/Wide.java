@@ -0,0 +1,43 @@
+package com.github.jlynx.jmh;
+
+import com.github.jlynx.Id;
+import com.github.jlynx.Table;
+
+// ID and 30 columns, CREATE TABLE in Tables
+@Table("WIDE")
+public class Wide {
+
+  @Id
+  public Integer id;
+  public Integer c01;
+  public java.math.BigDecimal c02;
+  public String c03;
+  public Integer c04;
+  public java.math.BigDecimal c05;
+  public String c06;
+  public Integer c07;
+  public java.math.BigDecimal c08;
+  public String c09;
+  public Integer c10;
+  public java.math.BigDecimal c11;
+  public String c12;
+  public Integer c13;
+  public java.math.BigDecimal c14;
+  public String c15;
+  public Integer c16;
+  public java.math.BigDecimal c17;
+  public String c18;
+  public Integer c19;
+  public java.math.BigDecimal c20;
+  public String c21;
+  public Integer c22;
+  public java.math.BigDecimal c23;
+  public String c24;
+  public Integer c25;
+  public java.math.BigDecimal c26;
+  public String c27;
+  public Integer c28;
+  public java.math.BigDecimal c29;
+  public String c30;
+
+}
@@ -0,0 +1,177 @@
+package com.github.jlynx;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking front end to a {@link DAOFactory}: each call runs on its own DAO
+ * on an executor and returns a CompletableFuture, completed exceptionally with
+ * the SQLException (or other exception) of the operation. Independent queries
+ * can be started together and joined, e.g. with
+ * {@link CompletableFuture#allOf(CompletableFuture...)}. Thread-safe.
+ *
+ * <pre>
+ * AsyncDAO async = AsyncDAO.newVirtualThreadInstance(factory, 32);
+ * CompletableFuture&lt;List&lt;Person&gt;&gt; people = async.listOf(Person.class, "SELECT * FROM PERSON", null);
+ * CompletableFuture&lt;Boolean&gt; found = async.select(company);
+ * </pre>
+ *
+ * @since v2.4
+ */
+public final class AsyncDAO implements AutoCloseable {
+
+  private final DAOFactory factory;
+  private final Executor executor;
+  private final ExecutorService owned;
+  private final Semaphore permits;
+
+  private AsyncDAO(DAOFactory factory, Executor executor, ExecutorService owned, Semaphore permits) {
+    if (factory == null)
+      throw new IllegalArgumentException("DAOFactory is required");
+    this.factory = factory;
+    this.executor = executor;
+    this.owned = owned;
+    this.permits = permits;
+  }
+
+  /**
+   * @param executor runs the blocking JDBC calls; it is not shut down by
+   *                 {@link #close()}
+   * @return AsyncDAO
+   */
+  public static AsyncDAO newInstance(DAOFactory factory, Executor executor) {
+    if (executor == null)
+      throw new IllegalArgumentException("Executor is required");
+    return new AsyncDAO(factory, executor, null, null);
+  }
+
+  /**
+   * Runs each call on a new virtual thread (Java 21 and higher), at most
+   * <code>maxConcurrency</code> at a time; further calls wait without holding a
+   * thread, so the bound is typically the connection pool size. On older Java
+   * versions a fixed pool of <code>maxConcurrency</code> platform threads is
+   * used instead.
+   *
+   * @param maxConcurrency maximum calls in progress
+   * @return AsyncDAO, to be closed when no longer used
+   */
+  public static AsyncDAO newVirtualThreadInstance(DAOFactory factory, int maxConcurrency) {
+    if (maxConcurrency < 1)
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+
+    ExecutorService virtual = newVirtualThreadExecutor();
+    if (virtual == null) {
+      LoggerFactory.getLogger("jlynx").debug("#newVirtualThreadInstance - virtual threads not available");
+      ExecutorService platform = Executors.newFixedThreadPool(maxConcurrency, r -> {
+        Thread thread = new Thread(r, "jlynx-async");
+        thread.setDaemon(true);
+        return thread;
+      });
+      return new AsyncDAO(factory, platform, platform, null);
+    }
+    return new AsyncDAO(factory, virtual, virtual, new Semaphore(maxConcurrency));
+  }
+
+  // Executors.newVirtualThreadPerTaskExecutor(), when running on Java 21+
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private <T> CompletableFuture<T> submit(Callable<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        if (future.isDone())
+          return; // cancelled while queued
+        try {
+          if (permits != null)
+            permits.acquire();
+        } catch (InterruptedException e) {
+          future.completeExceptionally(e);
+          return;
+        }
+        try {
+          future.complete(call.call());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        } finally {
+          if (permits != null)
+            permits.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * @see DAO#delete()
+   */
+  public CompletableFuture<Boolean> delete(Object bean) {
+    return submit(() -> factory.delete(bean));
+  }
+
+  /**
+   * @see DAO#executeSql(String, Object[])
+   */
+  public CompletableFuture<Integer> executeSql(String sql, Object[] params) {
+    return submit(() -> factory.executeSql(sql, params));
+  }
+
+  /**
+   * @see DAO#insert()
+   */
+  public CompletableFuture<Integer> insert(Object bean) {
+    return submit(() -> factory.insert(bean));
+  }
+
+  /**
+   * @see DAO#listOf(Class, String, Object[])
+   */
+  public <T> CompletableFuture<List<T>> listOf(Class<T> resultClass, String query, Object[] params) {
+    return submit(() -> factory.listOf(resultClass, query, params));
+  }
+
+  /**
+   * The bean's values are set when the future completes with true.
+   *
+   * @see DAO#select()
+   */
+  public CompletableFuture<Boolean> select(Object bean) {
+    return submit(() -> factory.select(bean));
+  }
+
+  /**
+   * @see DAO#update()
+   */
+  public CompletableFuture<Integer> update(Object bean) {
+    return submit(() -> factory.update(bean));
+  }
+
+  /**
+   * Shuts down the executor created by
+   * {@link #newVirtualThreadInstance(DAOFactory, int)}; calls in progress
+   * complete, new calls fail with RejectedExecutionException.
+   */
+  @Override
+  public void close() {
+    if (owned != null)
+      owned.shutdown();
+  }
+
+}
@@ -5,10 +5,10 @@ import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.LoggerFactory;
 
@@ -17,12 +17,11 @@ import org.slf4j.LoggerFactory;
  */
 public class BeanUtil {
 
-  private final static Map<Class<?>, Field[]> cache = new HashMap<>();
+  private final static Map<Class<?>, Field[]> cache = new ConcurrentHashMap<>();
 
   static Field[] getFields(final Class<?> targetClass) {
 
-    // cache.computeIfAbsent(targetClass, k -> targetClass.getFields());
-    cache.computeIfAbsent(targetClass, k -> {
+    return cache.computeIfAbsent(targetClass, k -> {
 
       List<Field> fields = new ArrayList<>();
       Class<?> class1 = targetClass;
@@ -30,7 +29,8 @@ public class BeanUtil {
         for (Field field : class1.getDeclaredFields()) {
 
           if (!field.trySetAccessible() || field.isAnnotationPresent(Exclude.class) || field.getType().isArray()
-              || java.util.Collection.class.isAssignableFrom(field.getType()) || field.getType().isInterface())
+              || java.util.Collection.class.isAssignableFrom(field.getType())
+              || field.getType().isInterface() && !Lobs.isLocator(field.getType()))
             continue;
           else
             fields.add(field);
@@ -40,34 +40,27 @@ public class BeanUtil {
       return fields.toArray(new Field[fields.size()]);
 
     });
-
-    return cache.get(targetClass);
   }
 
   private BeanUtil() {
   }
 
-  static Map<String, Object> describe(Object target) {
-
-    Map<String, Object> retMap = new HashMap<>();
-
-    Arrays.stream(getFields(target.getClass())).filter(field -> field.canAccess(target)).forEach(field -> {
-
-      try {
-        retMap.put(field.getName(), field.get(target));
-      } catch (IllegalAccessException e) {
-        LoggerFactory.getLogger("jlynx").error(e.getMessage(), e);
-      }
-
-    });
-
-    return retMap;
+  // copy of a mutable value commonly changed in place (dates, arrays), other
+  // values as is
+  static Object copyValue(Object value) {
+    if (value instanceof Date)
+      return ((Date) value).clone();
+    if (value instanceof Object[])
+      return ((Object[]) value).clone();
+    if (value instanceof byte[])
+      return ((byte[]) value).clone();
+    return value;
   }
 
   static Class<?> getType(String property, Object target) {
 
-    Field field = getFieldIgnoreCase(target, property);
-    return field.getType();
+    EntityMetadata.Property prop = EntityMetadata.of(target.getClass()).getProperty(property);
+    return prop == null ? null : prop.type;
   }
 
   /**
@@ -75,11 +68,10 @@ public class BeanUtil {
    */
   static Object getValue(String property, Object target) throws IllegalAccessException {
 
-    Field fieldToGet = getFieldIgnoreCase(target, property);
+    EntityMetadata.Property propertyToGet = EntityMetadata.of(target.getClass()).getProperty(property);
 
     try {
-      fieldToGet.setAccessible(true);
-      return fieldToGet.get(target);
+      return propertyToGet == null ? null : propertyToGet.get(target);
     } catch (IllegalAccessException e) {
       LoggerFactory.getLogger("jlynx").error(e.getMessage(), e);
       throw e;
@@ -88,30 +80,18 @@ public class BeanUtil {
 
   public static void setValueFromString(Object bean, String property, String value) {
 
-    for (Field field : getFields(bean.getClass())) {
-      if (field.getName().equalsIgnoreCase(property))
-        try {
-
-          Class<?> typeClass = field.getType();
-
-          if (typeClass == String.class)
-            field.set(bean, value);
-          else if (typeClass == Integer.class)
-            field.set(bean, Integer.parseInt(value));
-          else if (typeClass == Long.class)
-            field.set(bean, Long.parseLong(value));
-          else if (typeClass == java.sql.Date.class || typeClass == java.sql.Timestamp.class) {
-            long time = Long.parseLong(value);
-            Object dateVal = typeClass.getDeclaredConstructor(long.class).newInstance(time);
-            field.set(bean, dateVal);
-          } else
-            field.set(bean, typeClass.getDeclaredConstructor(String.class).newInstance(value));
-
-          return;
-        } catch (Throwable e) {
-          LoggerFactory.getLogger("jlynx").error(e.getMessage());
-        }
-    }
+    EntityMetadata.Property prop = EntityMetadata.of(bean.getClass()).getProperty(property);
+    if (prop != null && prop.name.equalsIgnoreCase(property))
+      try {
+        ValueParsers.Parser parser = ValueParsers.of(prop.type);
+        if (parser == null)
+          LoggerFactory.getLogger("jlynx").warn(bean.getClass().getSimpleName() + "#" + prop.name
+              + " - no conversion from String to " + prop.type.getName());
+        else
+          prop.set(bean, value == null ? null : parser.parse(value));
+      } catch (Throwable e) {
+        LoggerFactory.getLogger("jlynx").error(e.getMessage());
+      }
   }
 
   /**
@@ -119,52 +99,36 @@ public class BeanUtil {
    */
   public static void setValue(String propertyOrColumn, Object target, Object value) {
 
-    // LoggerFactory.getLogger("jlynx").error(propertyOrColumn);
-    // LoggerFactory.getLogger("jlynx").error(value.toString());
-    // LoggerFactory.getLogger("jlynx").error(value.getClass().getName());
-
     if (value == null || value.getClass().getPackage().getName().startsWith("java") || value instanceof InputStream
         || value instanceof Serializable) {
 
-      Field fieldToSet = getFieldIgnoreCase(target, propertyOrColumn);
+      EntityMetadata.Property propertyToSet = EntityMetadata.of(target.getClass()).getProperty(propertyOrColumn);
 
-      if (fieldToSet == null)
+      if (propertyToSet == null)
         LoggerFactory.getLogger("jlynx")
             .warn(target.getClass().getSimpleName() + "#" + propertyOrColumn + " - no property exists");
-      else if (fieldToSet.trySetAccessible())
-        try {
-          if (value instanceof java.sql.Timestamp && fieldToSet.getType().getCanonicalName().equals("java.sql.Date")) {
-            long time = ((Timestamp) value).getTime();
-            fieldToSet.set(target, new java.sql.Date(time));
-          } else if (value == null || fieldToSet.getType().isPrimitive()
-              || fieldToSet.getType().isAssignableFrom(value.getClass()))
-            fieldToSet.set(target, value);
-          else
-            LoggerFactory.getLogger("jlynx")
-                .warn(target.getClass().getSimpleName() + "#" + fieldToSet.getName() + " not set");
-
-        } catch (IllegalAccessException | IllegalArgumentException e) {
-          LoggerFactory.getLogger("jlynx").error(e.getMessage(), e);
-        }
+      else
+        setValue(propertyToSet, target, value);
 
     } else
       LoggerFactory.getLogger("jlynx").warn(propertyOrColumn + " could not be set, value not an expected type");
 
   }
 
-  private static Field getFieldIgnoreCase(Object bean, String fieldOrColumn) {
-    Field field1 = null;
-
-    for (Field fieldToCheck : BeanUtil.getFields(bean.getClass()))
-      if (fieldToCheck.getName().equalsIgnoreCase(fieldOrColumn)) {
-        field1 = fieldToCheck;
-        break;
-      } else if (fieldToCheck.isAnnotationPresent(Column.class)
-          && fieldOrColumn.equalsIgnoreCase(fieldToCheck.getAnnotation(Column.class).value())) {
-        field1 = fieldToCheck;
-        break;
-      }
-    return field1;
+  static void setValue(EntityMetadata.Property propertyToSet, Object target, Object value) {
+    try {
+      if (value instanceof java.sql.Timestamp && propertyToSet.type == java.sql.Date.class) {
+        long time = ((Timestamp) value).getTime();
+        propertyToSet.set(target, new java.sql.Date(time));
+      } else if (value == null || propertyToSet.type.isPrimitive() || propertyToSet.type.isInstance(value))
+        propertyToSet.set(target, value);
+      else
+        LoggerFactory.getLogger("jlynx")
+            .warn(target.getClass().getSimpleName() + "#" + propertyToSet.name + " not set");
+
+    } catch (IllegalAccessException | IllegalArgumentException e) {
+      LoggerFactory.getLogger("jlynx").error(e.getMessage(), e);
+    }
   }
 
-}
\ No newline at end of file
+}
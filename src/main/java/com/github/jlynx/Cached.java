@@ -0,0 +1,28 @@
+package com.github.jlynx;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the entity cache for a @Table class: {@link DAO#select()} by primary
+ * key is answered from memory when the row was read before, see
+ * {@link EntityCache}.
+ *
+ * @since v2.4
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cached {
+
+  /**
+   * @return maximum number of cached rows, least recently used rows are evicted
+   */
+  int maxSize() default 1000;
+
+  /**
+   * @return seconds a row stays cached, 0 for no expiry
+   */
+  long ttlSeconds() default 0;
+}
@@ -0,0 +1,85 @@
+package com.github.jlynx;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Property values of beans as last read from or written to the database, for
+ * {@link DAO#trackChanges(boolean)}. Beans are held by weak identity keys, a
+ * snapshot goes away with its bean; equals() and hashCode() of beans are never
+ * called.
+ */
+final class ChangeTracker {
+
+  private final static ReferenceQueue<Object> queue = new ReferenceQueue<>();
+  private final static Map<Ref, Object[]> snapshots = new ConcurrentHashMap<>();
+
+  private static final class Ref extends WeakReference<Object> {
+
+    private final int hash;
+
+    private Ref(Object bean, ReferenceQueue<Object> queue) {
+      super(bean, queue);
+      this.hash = System.identityHashCode(bean);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this)
+        return true;
+      if (!(o instanceof Ref))
+        return false;
+      Object bean = get();
+      return bean != null && bean == ((Ref) o).get();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private ChangeTracker() {
+  }
+
+  static void snapshot(EntityMetadata metadata, Object bean) throws IllegalAccessException {
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    Object[] values = new Object[properties.length];
+    for (int i = 0; i < properties.length; i++)
+      values[i] = BeanUtil.copyValue(properties[i].get(bean));
+    expunge();
+    snapshots.put(new Ref(bean, queue), values);
+  }
+
+  static void remove(Object bean) {
+    snapshots.remove(new Ref(bean, null));
+  }
+
+  /**
+   * @param exclude e.g. primary key columns
+   * @return properties changed since the snapshot, or <code>null</code> when the
+   *         bean has no snapshot
+   */
+  static BitSet getChanges(EntityMetadata metadata, Object bean, BitSet exclude) throws IllegalAccessException {
+    Object[] values = snapshots.get(new Ref(bean, null));
+    if (values == null)
+      return null;
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    BitSet changes = new BitSet(properties.length);
+    for (int i = 0; i < properties.length; i++)
+      if (!exclude.get(i) && !Objects.deepEquals(values[i], properties[i].get(bean)))
+        changes.set(i);
+    return changes;
+  }
+
+  private static void expunge() {
+    for (Reference<?> ref; (ref = queue.poll()) != null;)
+      snapshots.remove(ref);
+  }
+
+}
@@ -0,0 +1,695 @@
+package com.github.jlynx;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lightweight, bounded JDBC connection pool for URL based connections, opted
+ * into with {@link DAOImpl#newInstance(javax.sql.DataSource)} or
+ * {@link DAOFactory#newInstance(javax.sql.DataSource)}. Closing a connection,
+ * or the connection of one of its statements, returns it to the pool. Idle
+ * connections are reused most-recently-used first, validated with
+ * <code>Connection.isValid</code> when they have been idle a while, and
+ * evicted after the idle timeout or maximum lifetime; there is no housekeeping
+ * thread.
+ *
+ * @since v2.4
+ */
+public final class ConnectionPool implements DataSource, AutoCloseable {
+
+  private final static Map<String, ConnectionPool> shared = new ConcurrentHashMap<>();
+
+  private final String url;
+  private final Properties props;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+  private volatile int maxSize = 10;
+  private volatile long idleTimeout = TimeUnit.MINUTES.toNanos(10);
+  private volatile long maxLifetime = TimeUnit.MINUTES.toNanos(30);
+  private volatile long waitTimeout = TimeUnit.SECONDS.toNanos(30);
+  private volatile long validationInterval = TimeUnit.SECONDS.toNanos(5);
+  private volatile int validationTimeout = 5;
+  private volatile int statementCacheSize;
+  private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+  // guarded by lock
+  private int total;
+  private int active;
+  private long created;
+  private long destroyed;
+  private long borrowed;
+  private long timeouts;
+  private long waitNanos;
+  private boolean closed;
+
+  private ConnectionPool(String url, Properties props) {
+    this.url = url;
+    this.props = props;
+  }
+
+  /**
+   * A new pool, the caller is responsible for closing it.
+   *
+   * @param databaseUrl      JDBC database connection String
+   * @param connectionParams JDBC properties
+   * @return ConnectionPool
+   */
+  public static ConnectionPool newInstance(String databaseUrl, Properties connectionParams) {
+    if (databaseUrl == null || databaseUrl.length() < 2)
+      throw new IllegalArgumentException("Connection not valid");
+    return new ConnectionPool(databaseUrl, connectionParams);
+  }
+
+  /**
+   * The JVM-wide pool for a URL and connection properties, created with default
+   * settings on first use.
+   *
+   * @param databaseUrl      JDBC database connection String
+   * @param connectionParams JDBC properties
+   * @return ConnectionPool
+   */
+  public static ConnectionPool shared(String databaseUrl, Properties connectionParams) {
+    String key = databaseUrl + "|"
+        + (connectionParams == null || connectionParams.isEmpty() ? "" : new TreeMap<>(connectionParams).toString());
+    ConnectionPool pool = shared.get(key);
+    if (pool == null || pool.isClosed()) {
+      pool = newInstance(databaseUrl, connectionParams);
+      ConnectionPool existing = shared.putIfAbsent(key, pool);
+      if (existing != null && !existing.isClosed())
+        pool = existing;
+      else if (existing != null)
+        shared.put(key, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * @param connections maximum number of open connections, default 10
+   * @return ConnectionPool
+   */
+  public ConnectionPool maxSize(int connections) {
+    if (connections < 1)
+      throw new IllegalArgumentException("maxSize must be positive: " + connections);
+    maxSize = connections;
+    return this;
+  }
+
+  /**
+   * @param millis idle connections are closed after this time, default 10
+   *               minutes
+   * @return ConnectionPool
+   */
+  public ConnectionPool idleTimeout(long millis) {
+    idleTimeout = TimeUnit.MILLISECONDS.toNanos(millis);
+    return this;
+  }
+
+  /**
+   * @param millis connections are closed once this old, default 30 minutes
+   * @return ConnectionPool
+   */
+  public ConnectionPool maxLifetime(long millis) {
+    maxLifetime = TimeUnit.MILLISECONDS.toNanos(millis);
+    return this;
+  }
+
+  /**
+   * @param millis maximum time to wait for a connection when the pool is
+   *               exhausted, default 30 seconds
+   * @return ConnectionPool
+   */
+  public ConnectionPool waitTimeout(long millis) {
+    waitTimeout = TimeUnit.MILLISECONDS.toNanos(millis);
+    return this;
+  }
+
+  /**
+   * @param millis connections idle for longer are validated before use, default
+   *               5 seconds
+   * @return ConnectionPool
+   */
+  public ConnectionPool validationInterval(long millis) {
+    validationInterval = TimeUnit.MILLISECONDS.toNanos(millis);
+    return this;
+  }
+
+  /**
+   * @param seconds timeout passed to <code>Connection.isValid</code>, default 5
+   * @return ConnectionPool
+   */
+  public ConnectionPool validationTimeout(int seconds) {
+    validationTimeout = seconds;
+    return this;
+  }
+
+  /**
+   * Keeps up to this many PreparedStatements open per connection for re-use by
+   * DAOs using this pool, default 0 (disabled).
+   *
+   * @param statements maximum cached statements per connection
+   * @return ConnectionPool
+   */
+  public ConnectionPool statementCacheSize(int statements) {
+    statementCacheSize = statements;
+    return this;
+  }
+
+  // statement cache of a connection from a ConnectionPool, null if disabled
+  static StatementCache statementCache(Connection connection) {
+    if (Proxy.isProxyClass(connection.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(connection);
+      if (handler instanceof Handler)
+        return ((Handler) handler).statements();
+    }
+    return null;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+
+    final long start = System.nanoTime();
+    final long deadline = start + waitTimeout;
+
+    while (true) {
+
+      PooledConnection pooled = null;
+      boolean create = false;
+
+      lock.lock();
+      try {
+        while (pooled == null && !create) {
+          if (closed)
+            throw new SQLException("Connection pool is closed: " + url);
+          pooled = idle.pollFirst();
+          if (pooled == null) {
+            if (total < maxSize) {
+              total++;
+              create = true;
+            } else {
+              long remaining = deadline - System.nanoTime();
+              if (remaining <= 0) {
+                timeouts++;
+                throw new SQLTimeoutException("Timed out waiting for a connection: " + url + " " + stats());
+              }
+              available.awaitNanos(remaining);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted waiting for a connection", e);
+      } finally {
+        lock.unlock();
+      }
+
+      if (create)
+        try {
+          pooled = new PooledConnection(DriverManager.getConnection(url, props));
+        } catch (SQLException | RuntimeException e) {
+          discard(null);
+          throw e;
+        }
+      else if (!isUsable(pooled)) {
+        discard(pooled);
+        continue;
+      }
+
+      lock.lock();
+      try {
+        if (create)
+          created++;
+        active++;
+        borrowed++;
+        waitNanos += System.nanoTime() - start;
+      } finally {
+        lock.unlock();
+      }
+      return pooled.open();
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Credentials are set with the pool's connection properties");
+  }
+
+  private boolean isUsable(PooledConnection pooled) {
+    long now = System.nanoTime();
+    if (now - pooled.createdAt > maxLifetime || now - pooled.lastUsed > idleTimeout)
+      return false;
+    if (now - pooled.lastUsed > validationInterval)
+      try {
+        return pooled.connection.isValid(validationTimeout);
+      } catch (SQLException e) {
+        return false;
+      }
+    return true;
+  }
+
+  // returns a connection to the pool, called by the proxy's close()
+  private void release(PooledConnection pooled) {
+
+    boolean reusable;
+    try {
+      reusable = !pooled.connection.isClosed() && pooled.reset();
+    } catch (SQLException e) {
+      LoggerFactory.getLogger("jlynx").warn("#release - " + e.getMessage());
+      reusable = false;
+    }
+
+    List<PooledConnection> evicted = new ArrayList<>();
+    lock.lock();
+    try {
+      active--;
+      if (!reusable || closed || System.nanoTime() - pooled.createdAt > maxLifetime) {
+        total--;
+        destroyed++;
+        evicted.add(pooled);
+      } else {
+        pooled.lastUsed = System.nanoTime();
+        idle.addFirst(pooled);
+      }
+
+      // least recently used connections are at the end
+      PooledConnection last;
+      while ((last = idle.peekLast()) != null && last.lastUsed < System.nanoTime() - idleTimeout) {
+        idle.pollLast();
+        total--;
+        destroyed++;
+        evicted.add(last);
+      }
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    for (PooledConnection connection : evicted)
+      connection.closePhysical();
+  }
+
+  // frees the slot of a connection that could not be created or is unusable
+  private void discard(PooledConnection pooled) {
+    lock.lock();
+    try {
+      total--;
+      if (pooled != null)
+        destroyed++;
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+    if (pooled != null)
+      pooled.closePhysical();
+  }
+
+  /**
+   * Closes idle connections and rejects further requests; connections in use
+   * are closed when they are returned.
+   */
+  @Override
+  public void close() {
+    List<PooledConnection> evicted;
+    lock.lock();
+    try {
+      closed = true;
+      evicted = new ArrayList<>(idle);
+      total -= idle.size();
+      destroyed += idle.size();
+      idle.clear();
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    for (PooledConnection connection : evicted)
+      connection.closePhysical();
+  }
+
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return closed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return a snapshot of the pool counters
+   */
+  public Statistics getStatistics() {
+    lock.lock();
+    try {
+      return stats();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Statistics stats() {
+    return new Statistics(total, active, idle.size(), created, destroyed, borrowed, timeouts, waitNanos,
+        statementCounters);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return null;
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return 0;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this))
+      return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPool[" + url + "] " + getStatistics();
+  }
+
+  /**
+   * Pool counters at a point in time.
+   */
+  public static final class Statistics {
+
+    private final int total;
+    private final int active;
+    private final int idle;
+    private final long created;
+    private final long destroyed;
+    private final long borrowed;
+    private final long timeouts;
+    private final long waitNanos;
+    private final long statementHits;
+    private final long statementMisses;
+    private final long statementEvictions;
+
+    private Statistics(int total, int active, int idle, long created, long destroyed, long borrowed, long timeouts,
+        long waitNanos, StatementCache.Counters statements) {
+      this.total = total;
+      this.active = active;
+      this.idle = idle;
+      this.created = created;
+      this.destroyed = destroyed;
+      this.borrowed = borrowed;
+      this.timeouts = timeouts;
+      this.waitNanos = waitNanos;
+      this.statementHits = statements.hits.sum();
+      this.statementMisses = statements.misses.sum();
+      this.statementEvictions = statements.evictions.sum();
+    }
+
+    /**
+     * @return open connections, in use or idle
+     */
+    public int getTotal() {
+      return total;
+    }
+
+    public int getActive() {
+      return active;
+    }
+
+    public int getIdle() {
+      return idle;
+    }
+
+    public long getCreated() {
+      return created;
+    }
+
+    public long getDestroyed() {
+      return destroyed;
+    }
+
+    public long getBorrowed() {
+      return borrowed;
+    }
+
+    /**
+     * @return requests that failed waiting for a connection
+     */
+    public long getTimeouts() {
+      return timeouts;
+    }
+
+    /**
+     * @return average time to obtain a connection, in milliseconds
+     */
+    public double getAverageWaitMillis() {
+      return borrowed == 0 ? 0 : waitNanos / 1e6 / borrowed;
+    }
+
+    /**
+     * @return PreparedStatements re-used from the statement cache
+     */
+    public long getStatementHits() {
+      return statementHits;
+    }
+
+    /**
+     * @return PreparedStatements prepared because none was cached
+     */
+    public long getStatementMisses() {
+      return statementMisses;
+    }
+
+    /**
+     * @return cached PreparedStatements closed to make room
+     */
+    public long getStatementEvictions() {
+      return statementEvictions;
+    }
+
+    @Override
+    public String toString() {
+      return "total=" + total + ", active=" + active + ", idle=" + idle + ", created=" + created + ", destroyed="
+          + destroyed + ", borrowed=" + borrowed + ", timeouts=" + timeouts + ", avgWaitMs="
+          + String.format("%.3f", getAverageWaitMillis()) + ", statementHits=" + statementHits
+          + ", statementMisses=" + statementMisses + ", statementEvictions=" + statementEvictions;
+    }
+  }
+
+  /**
+   * Physical connection plus the state needed to hand it out again.
+   */
+  private final class PooledConnection {
+
+    private final Connection connection;
+    private final long createdAt = System.nanoTime();
+    private final boolean autoCommit;
+    private final boolean readOnly;
+    private final int isolation;
+    private long lastUsed = createdAt;
+    private boolean dirty;
+    private StatementCache statements;
+
+    private PooledConnection(Connection connection) throws SQLException {
+      this.connection = connection;
+      this.autoCommit = connection.getAutoCommit();
+      this.readOnly = connection.isReadOnly();
+      this.isolation = connection.getTransactionIsolation();
+    }
+
+    private Connection open() {
+      return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+          new Class<?>[] { Connection.class }, new Handler(this));
+    }
+
+    // undo session changes made by the borrower
+    private boolean reset() throws SQLException {
+      if (!connection.getAutoCommit()) {
+        connection.rollback();
+        connection.setAutoCommit(autoCommit);
+      } else if (!autoCommit)
+        connection.setAutoCommit(false);
+      if (dirty) {
+        if (connection.isReadOnly() != readOnly)
+          connection.setReadOnly(readOnly);
+        if (connection.getTransactionIsolation() != isolation)
+          connection.setTransactionIsolation(isolation);
+        dirty = false;
+      }
+      connection.clearWarnings();
+      return true;
+    }
+
+    private void closePhysical() {
+      if (statements != null)
+        statements.clear();
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        LoggerFactory.getLogger("jlynx").warn("#closePhysical - " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Connection handed to callers; close() returns the physical connection to
+   * the pool, any further use fails.
+   */
+  private final class Handler implements InvocationHandler {
+
+    private final PooledConnection pooled;
+    private boolean closed;
+
+    private Handler(PooledConnection pooled) {
+      this.pooled = pooled;
+    }
+
+    private StatementCache statements() {
+      if (closed || statementCacheSize < 1)
+        return null;
+      if (pooled.statements == null)
+        pooled.statements = new StatementCache(pooled.connection, statementCacheSize, statementCounters);
+      return pooled.statements;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            release(pooled);
+          }
+          return null;
+        case "isClosed":
+          return closed || pooled.connection.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled" + pooled.connection.toString();
+        case "unwrap":
+          if (((Class<?>) args[0]).isInstance(proxy))
+            return proxy;
+          break;
+        case "isWrapperFor":
+          if (((Class<?>) args[0]).isInstance(proxy))
+            return true;
+          break;
+        case "setReadOnly":
+        case "setTransactionIsolation":
+          pooled.dirty = true;
+          break;
+        default:
+      }
+
+      if (closed)
+        throw new SQLException("Connection is closed");
+
+      Object result;
+      try {
+        result = method.invoke(pooled.connection, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      // statements must not hand out the physical connection
+      if (result instanceof Statement)
+        return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { method.getReturnType() },
+            new StatementHandler((Connection) proxy, result));
+      return result;
+    }
+  }
+
+  /**
+   * Statement created through a pooled connection; getConnection() returns the
+   * pooled connection, so closing it returns the connection to the pool.
+   */
+  private static final class StatementHandler implements InvocationHandler {
+
+    private final Connection connection;
+    private final Object statement;
+
+    private StatementHandler(Connection connection, Object statement) {
+      this.connection = connection;
+      this.statement = statement;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+      switch (method.getName()) {
+        case "getConnection":
+          return connection;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "unwrap":
+          if (((Class<?>) args[0]).isInstance(proxy))
+            return proxy;
+          break;
+        case "isWrapperFor":
+          if (((Class<?>) args[0]).isInstance(proxy))
+            return true;
+          break;
+        default:
+      }
+
+      try {
+        return method.invoke(statement, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+}
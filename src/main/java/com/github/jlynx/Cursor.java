@@ -0,0 +1,26 @@
+package com.github.jlynx;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Forward-only iterator over query results; each row is mapped to a new object
+ * when {@link #next()} is called. The underlying ResultSet, statement and (if
+ * owned by the cursor) connection are released on {@link #close()}, or once the
+ * last row has been read.
+ *
+ * @param <T> result class
+ * @see com.github.jlynx.DAO#cursor(Class, String, Object[])
+ * @since v2.4
+ */
+public interface Cursor<T> extends Iterator<T>, AutoCloseable {
+
+  /**
+   * Releases database resources; safe to call more than once.
+   *
+   * @throws SQLException database exception
+   */
+  @Override
+  void close() throws SQLException;
+
+}
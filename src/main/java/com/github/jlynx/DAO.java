@@ -13,6 +13,24 @@ import java.util.List;
  */
 public interface DAO {
 
+  /**
+   * Opens a forward-only cursor over the results of a query; rows are mapped as
+   * they are read. The cursor must be closed, it owns the statement and, when
+   * auto-commit is on, the connection.
+   *
+   * @param resultClass class literal to store results
+   * @param query       SQL statement
+   * @param params      SQL statement parameters (see java.sql.PreparedStatement)
+   * @return Cursor
+   * @throws ReflectiveOperationException result class has no public no-arg
+   *                                      constructor
+   * @throws SQLException                 database exception
+   * @see #fetchSize(int)
+   * @since v2.4
+   */
+  <T> Cursor<T> cursor(Class<T> resultClass, String query, Object[] params)
+      throws SQLException, ReflectiveOperationException;
+
   /**
    * Deletes 1 row from a database.
    *
@@ -22,6 +40,32 @@ public interface DAO {
    */
   boolean delete() throws SQLException;
 
+  /**
+   * Deletes many POJOs using JDBC batches, grouped by table. Runs in a single
+   * transaction when auto-commit is on.
+   *
+   * @param beans POJOs with primary key values set, each with a @Table
+   *              annotation
+   * @return number of rows deleted for each bean, in iteration order
+   * @throws SQLException database exception
+   * @see java.sql.Statement#executeBatch()
+   * @since v2.4
+   */
+  int[] deleteAll(java.util.Collection<?> beans) throws SQLException;
+
+  /**
+   * Deletes rows from the table of an entity class without loading them.
+   *
+   * @param entityClass class with a @Table annotation
+   * @param where       SQL condition without the WHERE keyword, may be
+   *                    <code>null</code> to delete all rows
+   * @param params      parameters in the condition
+   * @return number of rows deleted
+   * @throws SQLException database exception
+   * @since v2.4
+   */
+  int deleteWhere(Class<?> entityClass, String where, Object[] params) throws SQLException;
+
   /**
    * Execute query.
    *
@@ -34,6 +78,95 @@ public interface DAO {
    */
   int executeSql(String sql, Object[] params) throws SQLException;
 
+  /**
+   * Writes the results of a query to a stream as CSV (with a header line) or
+   * JSON Lines, reading values straight from the ResultSet without creating
+   * beans. Heap use stays flat when the driver streams results, see
+   * {@link #fetchSize(int)}. The stream is not closed.
+   *
+   * @param resultClass optional @Table class; when given only columns mapped to
+   *                    its properties are written, named by their @Column value
+   * @param query       SQL statement
+   * @param params      SQL statement parameters (see java.sql.PreparedStatement)
+   * @param out         destination, UTF-8 encoded
+   * @param format      CSV or JSON_LINES
+   * @return number of rows written
+   * @throws SQLException        database exception
+   * @throws java.io.IOException stream exception
+   * @since v2.4
+   */
+  long export(Class<?> resultClass, String query, Object[] params, java.io.OutputStream out, Format format)
+      throws SQLException, java.io.IOException;
+
+  /**
+   * @see #export(Class, String, Object[], java.io.OutputStream, Format)
+   * @since v2.4
+   */
+  long export(Class<?> resultClass, String query, Object[] params, java.nio.channels.WritableByteChannel out,
+      Format format) throws SQLException, java.io.IOException;
+
+  /**
+   * Number of rows the driver fetches per round trip for queries (see
+   * java.sql.Statement#setFetchSize). On PostgreSQL, auto-commit is switched off
+   * while a cursor or stream is open so the driver can use a server-side
+   * cursor.
+   *
+   * @param rows fetch size, 0 for the driver default
+   * @return DAO
+   * @since v2.4
+   */
+  DAO fetchSize(int rows);
+
+  /**
+   * Executes a query and passes each row, mapped to a new object, to a handler;
+   * no List is built.
+   *
+   * @param resultClass class literal to store results
+   * @param query       SQL statement
+   * @param params      SQL statement parameters (see java.sql.PreparedStatement)
+   * @param handler     called once per row
+   * @return number of rows processed
+   * @throws ReflectiveOperationException result class has no public no-arg
+   *                                      constructor
+   * @throws SQLException                 database exception
+   * @since v2.4
+   */
+  <T> long forEach(Class<T> resultClass, String query, Object[] params, RowHandler<? super T> handler)
+      throws SQLException, ReflectiveOperationException;
+
+  /**
+   * Executes a query and passes each row to a handler. In reuse mode a single
+   * bean is re-populated for every row instead of creating one per row; the
+   * handler must then not keep a reference to it between calls.
+   *
+   * @param resultClass class literal to store results
+   * @param query       SQL statement
+   * @param params      SQL statement parameters (see java.sql.PreparedStatement)
+   * @param reuseBean   re-populate the same instance for every row
+   * @param handler     called once per row
+   * @return number of rows processed
+   * @throws ReflectiveOperationException result class has no public no-arg
+   *                                      constructor
+   * @throws SQLException                 database exception
+   * @since v2.4
+   */
+  <T> long forEach(Class<T> resultClass, String query, Object[] params, boolean reuseBean,
+      RowHandler<? super T> handler) throws SQLException, ReflectiveOperationException;
+
+  /**
+   * Serves the following {@link #listOf} calls of this DAO from the
+   * {@link QueryCache}, keyed by result class, SQL and parameters. Results are
+   * unmodifiable lists and are invalidated when jLynx writes to one of the
+   * tables; rows read inside a transaction are not cached.
+   *
+   * @param ttlSeconds seconds a result stays cached, 0 for no expiry
+   * @param tables     tables the queries read, by default the {@link Table} of
+   *                   the result class
+   * @return DAO
+   * @since v2.4
+   */
+  DAO cacheResults(long ttlSeconds, String... tables);
+
   /**
    * Returns a list of objects from the database.
    *
@@ -51,6 +184,34 @@ public interface DAO {
   <T> List<T> listOf(Class<T> resultClass, String query, Object[] params)
       throws SQLException, ReflectiveOperationException;
 
+  /**
+   * Keyset (seek) pagination: the rows of a query that follow
+   * <code>lastKey</code> in the order of <code>orderBy</code>, at most
+   * <code>pageSize</code>. Each page is read with an index range scan, so deep
+   * pages cost the same as the first, unlike OFFSET. The row limit uses the
+   * vendor's syntax (LIMIT, TOP or FETCH FIRST).
+   * <p>
+   * The order columns must be output columns of the query, not null, and
+   * identify a row (end with the primary key); the query must not have an
+   * ORDER BY.
+   *
+   * @param resultClass class literal to store results
+   * @param query       SQL statement, wrapped as a derived table
+   * @param params      SQL statement parameters
+   * @param orderBy     order columns, e.g. <code>{"CREATED DESC", "ID DESC"}</code>
+   * @param lastKey     {@link Page#getNextKey()} of the previous page, null for
+   *                    the first page
+   * @param pageSize    maximum rows per page
+   * @return Page
+   * @throws ReflectiveOperationException result class has no public no-arg
+   *                                      constructor
+   * @throws SQLException                 database exception
+   * @see DAOFactory#pages(Class, String, Object[], String[], int)
+   * @since v2.4
+   */
+  <T> Page<T> page(Class<T> resultClass, String query, Object[] params, String[] orderBy, Object[] lastKey,
+      int pageSize) throws SQLException, ReflectiveOperationException;
+
   /**
    * Inserts single row into a database.
    *
@@ -60,16 +221,64 @@ public interface DAO {
    */
   int insert() throws SQLException;
 
+  /**
+   * Inserts many POJOs using JDBC batches. Beans are grouped by table and
+   * non-null column set, each group is sent through a single PreparedStatement
+   * in batches of <code>batchSize</code>. Identity values are set on each bean's
+   * primary key field when the driver returns generated keys. Runs in a single
+   * transaction when auto-commit is on.
+   *
+   * @param beans     POJOs, each with a @Table annotation
+   * @param batchSize maximum number of rows per executeBatch() call
+   * @return number of rows added
+   * @throws SQLException database exception
+   * @see java.sql.PreparedStatement#addBatch()
+   * @since v2.4
+   */
+  int insertAll(java.util.Collection<?> beans, int batchSize) throws SQLException;
+
+  /**
+   * Inserts many POJOs with multi-row <code>INSERT ... VALUES (...),(...)</code>
+   * statements, grouped like {@link #insertAll(java.util.Collection, int)} and
+   * split so each statement stays under the database's bind parameter limit.
+   * Rows that do not fill a statement are sent as a JDBC batch. Generated
+   * identity values are not set on the beans, except on those batched rows. On
+   * Oracle, which has no multi-row VALUES, this is the same as
+   * <code>insertAll</code>. Runs in a single transaction when auto-commit is on.
+   *
+   * @param beans POJOs, each with a @Table annotation
+   * @return number of rows added
+   * @throws SQLException database exception
+   * @since v2.4
+   */
+  int insertValues(java.util.Collection<?> beans) throws SQLException;
+
   /**
    * Saves POJO to database; equivalent to <code>update()</code> if record exists
    * or <code>insert()</code> if record does not exist. POJO is then updated with
    * current database values.
+   * <p>
+   * A bean with its primary key set is written with one statement, the
+   * vendor's <code>MERGE</code> or <code>INSERT ... ON CONFLICT</code>
+   * (HSQLDB, Oracle, PostgreSQL, SQL Server); other databases are sent an update
+   * and, when no row matched, an insert. Beans without key values are inserted.
    *
    * @return - number of rows affected, should be 1
    * @throws SQLException - database exception
    */
   int save() throws SQLException;
 
+  /**
+   * {@link #save()} for many POJOs using JDBC batches, grouped by table and
+   * column set. Runs in a single transaction when auto-commit is on.
+   *
+   * @param beans POJOs, each with a @Table annotation
+   * @return number of rows inserted or updated
+   * @throws SQLException database exception
+   * @since v2.4
+   */
+  int saveAll(java.util.Collection<?> beans) throws SQLException;
+
   /**
    * Whether <code>null</code> should be preserved in UPDATE and INSERT
    * statements; by default NULL property values are removed from the statement.
@@ -93,6 +302,24 @@ public interface DAO {
    */
   boolean select() throws java.sql.SQLException;
 
+  /**
+   * Returns a lazily mapped Stream over the results of a query, so large results
+   * can be processed in constant memory. The Stream must be closed (e.g.
+   * try-with-resources) unless it is consumed to the end.
+   *
+   * @param resultClass class literal to store results
+   * @param query       SQL statement
+   * @param params      SQL statement parameters (see java.sql.PreparedStatement)
+   * @return Stream
+   * @throws ReflectiveOperationException result class has no public no-arg
+   *                                      constructor
+   * @throws SQLException                 database exception
+   * @see #cursor(Class, String, Object[])
+   * @since v2.4
+   */
+  <T> java.util.stream.Stream<T> stream(Class<T> resultClass, String query, Object[] params)
+      throws SQLException, ReflectiveOperationException;
+
   /**
    * Sets the object to be used in database transactions.
    * 
@@ -104,6 +331,40 @@ public interface DAO {
    */
   DAO setBean(Object bean);
 
+  /**
+   * Leaves large object columns (BLOB, CLOB, NCLOB and LONGVAR*) out of the
+   * beans read by {@link #select()}, {@link #listOf}, {@link #forEach} and
+   * cursors, unless the property is declared as a java.sql.Blob, Clob, NClob,
+   * InputStream or Reader. Blob, Clob and NClob properties get the driver's
+   * locator, only valid while the connection is, e.g. within a transaction.
+   * InputStream and Reader properties get the driver's stream within
+   * {@link #forEach}, {@link #cursor} and {@link #stream}, valid until the next
+   * row; {@link #select()} and {@link #listOf} read the whole value into an
+   * in-memory stream.
+   * <p>
+   * Parameters of type InputStream and Reader are streamed to the driver
+   * without a length; java.nio.file.Path, ByteBuffer and FileChannel values are
+   * streamed with their size, files are closed after the statement.
+   *
+   * @param skip true to skip LOB columns
+   * @return DAO
+   * @since v2.4
+   */
+  DAO skipLobs(boolean skip);
+
+  /**
+   * Keeps up to this many PreparedStatements open for re-use on a Connection
+   * passed to {@link DAOImpl#newInstance(java.sql.Connection)}. Connections from
+   * a {@link ConnectionPool} use the pool's statement cache instead, see
+   * {@link ConnectionPool#statementCacheSize(int)}; other connection sources
+   * are not cached.
+   *
+   * @param statements maximum cached statements, 0 to disable
+   * @return DAO
+   * @since v2.4
+   */
+  DAO statementCacheSize(int statements);
+
   /**
    * The current connection.
    *
@@ -122,4 +383,46 @@ public interface DAO {
    */
   int update() throws java.sql.SQLException;
 
+  /**
+   * Dirty tracking: beans read by {@link #select()} and {@link #listOf} keep a
+   * snapshot of their values, and {@link #update()} / {@link #updateAll} write
+   * only the columns changed since (including columns set to null). When
+   * nothing changed only the primary key is looked up, so the update counts
+   * as one row if the row still exists and as zero otherwise.
+   * Snapshots are refreshed after an update and released with the bean.
+   *
+   * @param track true to enable
+   * @return DAO
+   * @since v2.4
+   */
+  DAO trackChanges(boolean track);
+
+  /**
+   * Updates many POJOs using JDBC batches, grouped by table and column set.
+   * Runs in a single transaction when auto-commit is on.
+   *
+   * @param beans POJOs with primary key values set, each with a @Table
+   *              annotation
+   * @return number of rows updated for each bean, in iteration order
+   * @throws SQLException database exception
+   * @see java.sql.Statement#executeBatch()
+   * @since v2.4
+   */
+  int[] updateAll(java.util.Collection<?> beans) throws SQLException;
+
+  /**
+   * Updates rows in the table of an entity class without loading them.
+   *
+   * @param entityClass class with a @Table annotation
+   * @param values      new values keyed by property or column name
+   * @param where       SQL condition without the WHERE keyword, may be
+   *                    <code>null</code> to update all rows
+   * @param params      parameters in the condition
+   * @return number of rows updated
+   * @throws SQLException database exception
+   * @since v2.4
+   */
+  int updateWhere(Class<?> entityClass, java.util.Map<String, ?> values, String where, Object[] params)
+      throws SQLException;
+
 }
@@ -0,0 +1,171 @@
+package com.github.jlynx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A completed database operation, see {@link DAOListener}. Timings are in
+ * nanoseconds; for batches the SQL is that of the first statement and the
+ * timings and row count cover the whole operation.
+ *
+ * @since v2.4
+ */
+public final class DAOEvent {
+
+  private final String operation;
+  private final String entity;
+  private final String rawSql;
+  private final int bindCount;
+  private final long rows;
+  private final long connectionNanos;
+  private final long buildNanos;
+  private final long executionNanos;
+  private final long mappingNanos;
+  private final long totalNanos;
+  private final Throwable failure;
+  private String sql;
+
+  DAOEvent(String operation, String entity, String rawSql, int bindCount, long rows, long connectionNanos,
+      long buildNanos, long executionNanos, long mappingNanos, long totalNanos, Throwable failure) {
+    this.operation = operation;
+    this.entity = entity;
+    this.rawSql = rawSql;
+    this.bindCount = bindCount;
+    this.rows = rows;
+    this.connectionNanos = connectionNanos;
+    this.buildNanos = buildNanos;
+    this.executionNanos = executionNanos;
+    this.mappingNanos = mappingNanos;
+    this.totalNanos = totalNanos;
+    this.failure = failure;
+  }
+
+  /**
+   * @return DAO method, e.g. <code>select</code> or <code>listOf</code>
+   */
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return table of the bean or result class, <code>null</code> for plain SQL
+   */
+  public String getEntity() {
+    return entity;
+  }
+
+  /**
+   * @return SQL with literals replaced by <code>?</code> and whitespace
+   *         collapsed, so equal statements compare equal; <code>null</code>
+   *         when no statement was prepared
+   */
+  public String getSql() {
+    if (sql == null && rawSql != null)
+      sql = normalize(rawSql);
+    return sql;
+  }
+
+  /**
+   * @return bind parameters of one execution
+   */
+  public int getBindCount() {
+    return bindCount;
+  }
+
+  /**
+   * @return rows affected, or returned by a query
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  public long getConnectionNanos() {
+    return connectionNanos;
+  }
+
+  /**
+   * @return building SQL and preparing the statement, including key lookups
+   */
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  public long getExecutionNanos() {
+    return executionNanos;
+  }
+
+  /**
+   * @return reading the ResultSet into beans
+   */
+  public long getMappingNanos() {
+    return mappingNanos;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * @return the exception thrown by the operation, or <code>null</code>
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  @Override
+  public String toString() {
+    return operation + (entity == null ? "" : " " + entity) + " - " + millis(totalNanos) + " ms (connection "
+        + millis(connectionNanos) + ", build " + millis(buildNanos) + ", execution " + millis(executionNanos)
+        + ", mapping " + millis(mappingNanos) + "), rows " + rows + ", binds " + bindCount
+        + (failure == null ? "" : ", failed: " + failure) + (rawSql == null ? "" : " - " + getSql());
+  }
+
+  private static String millis(long nanos) {
+    return String.valueOf(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  // string and numeric literals to ?, whitespace runs to one space
+  static String normalize(String sql) {
+    StringBuilder sb = new StringBuilder(sql.length());
+    int length = sql.length();
+    for (int i = 0; i < length; i++) {
+      char c = sql.charAt(i);
+      if (c == '\'') {
+        // '' inside a literal is an escaped quote
+        for (i++; i < length; i++)
+          if (sql.charAt(i) == '\'') {
+            if (i + 1 < length && sql.charAt(i + 1) == '\'')
+              i++;
+            else
+              break;
+          }
+        sb.append('?');
+      } else if (c == '"') {
+        // quoted identifier, kept
+        int end = sql.indexOf('"', i + 1);
+        end = end < 0 ? length - 1 : end;
+        sb.append(sql, i, end + 1);
+        i = end;
+      } else if (Character.isDigit(c) && (sb.length() == 0 || !isIdentifierPart(sb.charAt(sb.length() - 1)))) {
+        while (i + 1 < length && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.'))
+          i++;
+        sb.append('?');
+      } else if (Character.isWhitespace(c)) {
+        while (i + 1 < length && Character.isWhitespace(sql.charAt(i + 1)))
+          i++;
+        if (sb.length() > 0)
+          sb.append(' ');
+      } else
+        sb.append(c);
+    }
+    int end = sb.length();
+    while (end > 0 && sb.charAt(end - 1) == ' ')
+      end--;
+    sb.setLength(end);
+    return sb.toString();
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+  }
+
+}
@@ -0,0 +1,460 @@
+package com.github.jlynx;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe entry point to jLynx; one instance can be shared by any number of
+ * threads. The factory owns the connection source, metadata (entities, primary
+ * keys, SQL) is cached per JVM. Each operation runs on its own short-lived DAO,
+ * so no state is shared between calls.
+ *
+ * <pre>
+ * DAOFactory factory = DAOFactory.newInstance(dataSource);
+ * factory.insert(person);
+ * List&lt;Person&gt; people = factory.listOf(Person.class, "SELECT * FROM PERSON", null);
+ * </pre>
+ *
+ * @see com.github.jlynx.DAO
+ * @since v2.4
+ */
+public final class DAOFactory {
+
+  private final static int WARM_UP_THREADS = 8;
+
+  private final DataSource dataSource;
+  private final String dataSourceName;
+  private volatile DataSource namedDataSource;
+  private volatile boolean trackChanges;
+  private volatile boolean skipLobs;
+
+  private DAOFactory(DataSource dataSource, String dataSourceName) {
+    this.dataSource = dataSource;
+    this.dataSourceName = dataSourceName;
+  }
+
+  /**
+   * @param dataSource JDBC DataSource, typically a connection pool
+   * @return DAOFactory
+   */
+  public static DAOFactory newInstance(DataSource dataSource) {
+    if (dataSource == null)
+      throw new IllegalArgumentException("DataSource is required");
+    return new DAOFactory(dataSource, null);
+  }
+
+  /**
+   * Connections are opened with DriverManager and not pooled; for pooling use
+   * <code>newInstance(ConnectionPool.shared(url, props))</code>, see
+   * {@link ConnectionPool#shared(String, Properties)}.
+   *
+   * @param databaseUrl      JDBC database connection String
+   * @param connectionParams JDBC properties
+   * @return DAOFactory
+   */
+  public static DAOFactory newInstance(String databaseUrl, Properties connectionParams) {
+    return new DAOFactory(DriverDataSource.of(databaseUrl, connectionParams), null);
+  }
+
+  /**
+   * @param dataSourceName JNDI name, looked up once on first use
+   * @return DAOFactory
+   */
+  public static DAOFactory newInstance(String dataSourceName) {
+    return new DAOFactory(null, dataSourceName);
+  }
+
+  /**
+   * A new DAO bound to this factory's connection source. DAO instances are
+   * cheap but not thread-safe; use one per thread or per unit of work.
+   *
+   * @return DAO
+   * @throws SQLException JNDI lookup failed
+   */
+  public DAO newDAO() throws SQLException {
+    return DAOImpl.newInstance(getDataSource()).trackChanges(trackChanges).skipLobs(skipLobs);
+  }
+
+  /**
+   * Enables dirty tracking on the DAOs of this factory, so beans read with
+   * {@link #select(Object)} or {@link #listOf} are updated column by column.
+   *
+   * @param track true to enable
+   * @return this factory
+   * @see DAO#trackChanges(boolean)
+   */
+  public DAOFactory trackChanges(boolean track) {
+    this.trackChanges = track;
+    return this;
+  }
+
+  /**
+   * Leaves LOB columns out of the beans read by the DAOs of this factory, unless
+   * the property is a locator or stream.
+   *
+   * @param skip true to skip LOB columns
+   * @return this factory
+   * @see DAO#skipLobs(boolean)
+   */
+  public DAOFactory skipLobs(boolean skip) {
+    this.skipLobs = skip;
+    return this;
+  }
+
+  /**
+   * A connection from this factory's connection source; the caller must close
+   * it.
+   *
+   * @return Connection
+   * @throws SQLException database exception
+   */
+  public Connection getConnection() throws SQLException {
+    return getDataSource().getConnection();
+  }
+
+  private DataSource getDataSource() throws SQLException {
+    if (dataSource != null)
+      return dataSource;
+    DataSource ds = namedDataSource;
+    if (ds == null)
+      namedDataSource = ds = DAOImpl.lookupDataSource(dataSourceName);
+    return ds;
+  }
+
+  /**
+   * Resolves database vendor, entity metadata, primary keys and the key based
+   * SQL of the given classes in parallel, typically at startup, so the first
+   * requests do not wait for metadata queries. Tables without a primary key are
+   * logged and skipped.
+   *
+   * @param entityClasses classes annotated with {@link Table}
+   * @return this factory
+   * @throws SQLException no connection could be obtained
+   */
+  public DAOFactory warmUp(Class<?>... entityClasses) throws SQLException {
+
+    SchemaUtil.Database database;
+    try (Connection conn = getConnection()) {
+      database = SchemaUtil.getDatabase(getDataSource(), conn);
+    }
+    if (entityClasses.length == 0)
+      return this;
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(entityClasses.length, WARM_UP_THREADS), r -> {
+      Thread thread = new Thread(r, "jlynx-warm-up");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (Class<?> entityClass : entityClasses)
+        results.add(executor.submit(() -> {
+          warmUp(entityClass, database);
+          return null;
+        }));
+      for (Future<?> result : results)
+        result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Warm-up interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException)
+        throw (SQLException) e.getCause();
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return this;
+  }
+
+  /**
+   * {@link #warmUp(Class...)} for all {@link Table} classes found on the class
+   * path in a package and its sub-packages.
+   *
+   * @param packageName e.g. <code>com.acme.model</code>
+   * @return this factory
+   * @throws SQLException no connection could be obtained
+   * @throws IOException  class path could not be read
+   */
+  public DAOFactory warmUp(String packageName) throws SQLException, IOException {
+    return warmUp(findEntities(packageName).toArray(new Class<?>[0]));
+  }
+
+  private void warmUp(Class<?> entityClass, SchemaUtil.Database database) throws SQLException {
+
+    EntityMetadata metadata = EntityMetadata.of(entityClass);
+    if (metadata.getTable() == null)
+      return;
+
+    Set<String> keys = metadata.getKeys();
+    if (keys == null)
+      try (Connection conn = getConnection()) {
+        keys = SchemaUtil.getPK(conn, database.url, metadata.getTable());
+      } catch (SQLException e) {
+        LoggerFactory.getLogger("jlynx").warn("#warmUp - " + entityClass.getName() + ": " + e.getMessage());
+        return;
+      }
+
+    BitSet filter = new BitSet();
+    for (String key : keys) {
+      EntityMetadata.Property property = metadata.getProperty(key);
+      if (property == null)
+        return;
+      filter.set(property.index);
+    }
+    SqlTemplate.select(metadata, database.vendor, filter);
+    SqlTemplate.delete(metadata, database.vendor, filter);
+  }
+
+  private static List<Class<?>> findEntities(String packageName) throws IOException {
+
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    if (loader == null)
+      loader = DAOFactory.class.getClassLoader();
+
+    String path = packageName.replace('.', '/');
+    List<String> classNames = new ArrayList<>();
+    Enumeration<URL> resources = loader.getResources(path);
+    while (resources.hasMoreElements()) {
+      URL url = resources.nextElement();
+      if ("file".equals(url.getProtocol())) {
+        Path root;
+        try {
+          root = Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+          throw new IOException(e);
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+          files.map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+              .filter(name -> name.endsWith(".class")).forEach(name -> classNames.add(path + "/" + name));
+        }
+      } else if ("jar".equals(url.getProtocol())) {
+        JarURLConnection connection = (JarURLConnection) url.openConnection();
+        connection.setUseCaches(false);
+        try (JarFile jar = connection.getJarFile()) {
+          Enumeration<JarEntry> entries = jar.entries();
+          while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(path + "/") && name.endsWith(".class"))
+              classNames.add(name);
+          }
+        }
+      }
+    }
+
+    List<Class<?>> entities = new ArrayList<>();
+    for (String name : classNames) {
+      if (name.endsWith("-info.class") || name.endsWith(EntityMapper.SUFFIX + ".class"))
+        continue;
+      try {
+        Class<?> type = Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+        if (type.isAnnotationPresent(Table.class))
+          entities.add(type);
+      } catch (ClassNotFoundException | LinkageError e) {
+        LoggerFactory.getLogger("jlynx").debug("#findEntities - " + name + ": " + e);
+      }
+    }
+    return entities;
+  }
+
+  /**
+   * Saves the database and primary key metadata cached in this JVM, e.g. after
+   * {@link #warmUp(Class...)}, to be loaded with {@link #loadSnapshot(Path)} on
+   * the next start. Entries are keyed by connection URL without passwords.
+   *
+   * @param file properties file
+   * @throws IOException file could not be written
+   */
+  public static void saveSnapshot(Path file) throws IOException {
+    SchemaUtil.saveSnapshot(file);
+  }
+
+  /**
+   * Loads metadata saved with {@link #saveSnapshot(Path)}; primary keys found
+   * in the snapshot are not queried from the database. Stale entries are not
+   * detected, delete the file after schema changes.
+   *
+   * @param file properties file
+   * @return number of primary keys loaded
+   * @throws IOException file could not be read
+   */
+  public static int loadSnapshot(Path file) throws IOException {
+    return SchemaUtil.loadSnapshot(file);
+  }
+
+  /**
+   * @see DAO#delete()
+   */
+  public boolean delete(Object bean) throws SQLException {
+    return newDAO().setBean(bean).delete();
+  }
+
+  /**
+   * @see DAO#deleteAll(Collection)
+   */
+  public int[] deleteAll(Collection<?> beans) throws SQLException {
+    return newDAO().deleteAll(beans);
+  }
+
+  /**
+   * @see DAO#executeSql(String, Object[])
+   */
+  public int executeSql(String sql, Object[] params) throws SQLException {
+    return newDAO().executeSql(sql, params);
+  }
+
+  /**
+   * @see DAO#export(Class, String, Object[], java.io.OutputStream, Format)
+   */
+  public long export(Class<?> resultClass, String query, Object[] params, java.io.OutputStream out, Format format)
+      throws SQLException, IOException {
+    return newDAO().export(resultClass, query, params, out, format);
+  }
+
+  /**
+   * @see DAO#insert()
+   */
+  public int insert(Object bean) throws SQLException {
+    return newDAO().setBean(bean).insert();
+  }
+
+  /**
+   * @see DAO#insertAll(Collection, int)
+   */
+  public int insertAll(Collection<?> beans, int batchSize) throws SQLException {
+    return newDAO().insertAll(beans, batchSize);
+  }
+
+  /**
+   * @see DAO#insertValues(Collection)
+   */
+  public int insertValues(Collection<?> beans) throws SQLException {
+    return newDAO().insertValues(beans);
+  }
+
+  /**
+   * @see DAO#listOf(Class, String, Object[])
+   */
+  public <T> List<T> listOf(Class<T> resultClass, String query, Object[] params)
+      throws SQLException, ReflectiveOperationException {
+    return newDAO().listOf(resultClass, query, params);
+  }
+
+  /**
+   * {@link #listOf(Class, String, Object[])} served from the
+   * {@link QueryCache}.
+   *
+   * @see DAO#cacheResults(long, String...)
+   */
+  public <T> List<T> listOf(Class<T> resultClass, String query, Object[] params, long ttlSeconds,
+      String... tables) throws SQLException, ReflectiveOperationException {
+    return newDAO().cacheResults(ttlSeconds, tables).listOf(resultClass, query, params);
+  }
+
+  /**
+   * @see DAO#page(Class, String, Object[], String[], Object[], int)
+   */
+  public <T> Page<T> page(Class<T> resultClass, String query, Object[] params, String[] orderBy, Object[] lastKey,
+      int pageSize) throws SQLException, ReflectiveOperationException {
+    return newDAO().page(resultClass, query, params, orderBy, lastKey, pageSize);
+  }
+
+  /**
+   * All pages of a keyset-paginated query, read ahead: while the caller
+   * processes a page the next one is read on a background (daemon) thread. The
+   * cursor should be closed when not read to the end. Exceptions are thrown by
+   * {@link Cursor#next()}, SQLExceptions wrapped in a RuntimeException.
+   *
+   * <pre>
+   * try (Cursor&lt;Page&lt;Audit&gt;&gt; pages = factory.pages(Audit.class, "SELECT * FROM AUDIT", null,
+   *     new String[] { "ID" }, 1000)) {
+   *   while (pages.hasNext())
+   *     process(pages.next().getItems());
+   * }
+   * </pre>
+   *
+   * @see DAO#page(Class, String, Object[], String[], Object[], int)
+   */
+  public <T> Cursor<Page<T>> pages(Class<T> resultClass, String query, Object[] params, String[] orderBy,
+      int pageSize) {
+    return pages(resultClass, query, params, orderBy, pageSize, r -> {
+      Thread thread = new Thread(r, "jlynx-prefetch");
+      thread.setDaemon(true);
+      thread.start();
+    });
+  }
+
+  /**
+   * {@link #pages(Class, String, Object[], String[], int)} reading pages on an
+   * executor, e.g. of virtual threads.
+   */
+  public <T> Cursor<Page<T>> pages(Class<T> resultClass, String query, Object[] params, String[] orderBy,
+      int pageSize, Executor executor) {
+    if (executor == null)
+      throw new IllegalArgumentException("Executor is required");
+    return new PageCursor<>(this, executor, resultClass, query, params, orderBy, pageSize);
+  }
+
+  /**
+   * @see DAO#save()
+   */
+  public int save(Object bean) throws SQLException {
+    return newDAO().setBean(bean).save();
+  }
+
+  /**
+   * @see DAO#saveAll(Collection)
+   */
+  public int saveAll(Collection<?> beans) throws SQLException {
+    return newDAO().saveAll(beans);
+  }
+
+  /**
+   * @see DAO#select()
+   */
+  public boolean select(Object bean) throws SQLException {
+    return newDAO().setBean(bean).select();
+  }
+
+  /**
+   * @see DAO#update()
+   */
+  public int update(Object bean) throws SQLException {
+    return newDAO().setBean(bean).update();
+  }
+
+  /**
+   * @see DAO#updateAll(Collection)
+   */
+  public int[] updateAll(Collection<?> beans) throws SQLException {
+    return newDAO().updateAll(beans);
+  }
+
+}
@@ -2,10 +2,18 @@ package com.github.jlynx;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,13 +23,20 @@ import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -38,22 +53,32 @@ import org.slf4j.LoggerFactory;
  */
 public class DAOImpl implements DAO {
 
-  private final static Map<String, String> entityMap = new TreeMap<>();
   private final static Logger _logger = LoggerFactory.getLogger("jlynx");
+  private final static int BATCH_SIZE = 1000;
 
   private Object _bean;
   private Connection _conn;
-  private Properties _cnProps;
   private String _dsName;
+  private DataSource _dataSource;
   private int _dbVendor;
+  private String _dbUrl;
   private String _entityName;
+  private EntityMetadata _metadata;
   private boolean _keepNullsInQuery;
+  private int _fetchSize;
+  private long _cacheTtl;
+  private boolean _trackChanges;
+  private boolean _skipLobs;
+  private String[] _cacheTables;
   private Set<String> _keys;
+  private boolean _generatedKeys;
   private PreparedStatement _ps;
   private ResultSet _rs;
-  private Statement _stmt;
+  private StatementCache _statements;
+  private Probe _probe;
+  // files bound as parameters, closed with the statement
+  private List<InputStream> _streams;
 
-  private String _cnUrl;
   private boolean _managedConnection;
 
   private DAOImpl() {
@@ -77,7 +102,9 @@ public class DAOImpl implements DAO {
 
   /**
    * Create a <code>com.github.jlynx.DAO</code> instance with database URL and
-   * connection parameters.
+   * connection parameters. Connections are opened with DriverManager and not
+   * pooled; to pool them use
+   * <code>newInstance(ConnectionPool.shared(url, props))</code>.
    *
    * @param databaseUrl      JDBC database connection String
    * @param connectionParams JDBC properties
@@ -85,8 +112,21 @@ public class DAOImpl implements DAO {
    */
   public static DAO newInstance(String databaseUrl, Properties connectionParams) {
     DAOImpl dao = new DAOImpl();
-    dao._cnUrl = databaseUrl;
-    dao._cnProps = connectionParams;
+    dao._dataSource = DriverDataSource.of(databaseUrl, connectionParams);
+    return dao;
+  }
+
+  /**
+   * Create a <code>com.github.jlynx.DAO</code> instance with a DataSource, e.g. a
+   * connection pool.
+   *
+   * @param dataSource JDBC DataSource
+   * @return DAO
+   * @since v2.4
+   */
+  public static DAO newInstance(DataSource dataSource) {
+    DAOImpl dao = new DAOImpl();
+    dao._dataSource = dataSource;
     return dao;
   }
 
@@ -102,81 +142,13 @@ public class DAOImpl implements DAO {
     return dao;
   }
 
-  // pre-condition: ResultSet next() called
-  private void setValues(ResultSet rs, Object object) throws SQLException {
-
-    for (int colIndex = 1; colIndex <= rs.getMetaData().getColumnCount(); colIndex++) {
-
-      String colName = rs.getMetaData().getColumnName(colIndex);
-      Object value = null;
-      int type = rs.getMetaData().getColumnType(colIndex);
-
-      switch (type) {
-        case Types.BLOB:
-        case Types.VARBINARY:
-        case Types.LONGVARBINARY:
-          value = rs.getBlob(colIndex);
-          if (value != null)
-            value = ((Blob) value).getBinaryStream();
-          break;
-        case Types.VARCHAR:
-        case Types.CHAR:
-        case Types.CLOB:
-        case Types.LONGVARCHAR:
-        case Types.NVARCHAR:
-        case Types.LONGNVARCHAR:
-          value = rs.getString(colIndex);
-          break;
-        case Types.TIMESTAMP:
-        case Types.TIMESTAMP_WITH_TIMEZONE:
-          value = rs.getObject(colIndex, LocalDateTime.class);
-          if (value == null)
-            value = rs.getTimestamp(colIndex);
-          break;
-        case Types.DATE:
-          value = rs.getObject(colIndex, LocalDate.class);
-          if (value == null)
-            value = rs.getDate(colIndex);
-          break;
-        case Types.INTEGER:
-        case Types.TINYINT:
-        case Types.SMALLINT:
-          value = rs.getInt(colIndex);
-          break;
-        case Types.BIGINT:
-          value = rs.getLong(colIndex);
-          break;
-        case Types.NUMERIC:
-        case Types.DECIMAL:
-          value = rs.getBigDecimal(colIndex);
-          break;
-        case Types.FLOAT:
-          value = rs.getFloat(colIndex);
-          break;
-        case Types.BIT:
-        case Types.BOOLEAN:
-          value = rs.getBoolean(colIndex);
-          break;
-        default:
-          value = rs.getObject(colIndex);
-      }
-
-      if (!entityMap.containsKey(object.getClass().getName()) && object.getClass().isAnnotationPresent(Table.class))
-        entityMap.put(object.getClass().getCanonicalName(), object.getClass().getAnnotation(Table.class).value());
-
-      BeanUtil.setValue(colName, object, value);
-
-    }
-
-  }
-
   private void setClass(Class<?> aClass) throws ReflectiveOperationException {
 
-    Table table = aClass.getAnnotation(Table.class);
-    _entityName = table.value();
+    _metadata = EntityMetadata.of(aClass);
+    _entityName = _metadata.getTable();
     _bean = aClass.getConstructor().newInstance();
 
-    if (!aClass.isAnnotationPresent(Table.class))
+    if (!aClass.isAnnotationPresent(Table.class) && _logger.isDebugEnabled())
       _logger.debug(Table.class.getName() + " annotation is missing! " + aClass.getName());
 
   }
@@ -189,50 +161,54 @@ public class DAOImpl implements DAO {
 
   private void connect() throws SQLException {
     if (!_managedConnection && (_conn == null || _conn.isClosed())) {
-      if (_cnUrl != null && _cnUrl.length() > 1)
-        _conn = DriverManager.getConnection(_cnUrl, _cnProps);
+      if (_dataSource != null)
+        _conn = _dataSource.getConnection();
       else if (_dsName != null)
-        connectDS();
+        _conn = lookupDataSource(_dsName).getConnection();
       else
         throw new RuntimeException("Connection not valid");
 
-      _dbVendor = SchemaUtil.findDbVendor(_conn.getMetaData());
+      _statements = ConnectionPool.statementCache(_conn);
+    }
+
+    if (_dbUrl == null && _conn != null) {
+      SchemaUtil.Database database = SchemaUtil.getDatabase(_dataSource != null ? _dataSource : _dsName, _conn);
+      _dbUrl = database.url;
+      _dbVendor = database.vendor;
+      _generatedKeys = database.generatedKeys;
     }
   }
 
-  private void connectDS() throws SQLException {
+  static DataSource lookupDataSource(String dsName) throws SQLException {
 
     Context ctx = null;
     DataSource ds = null;
     try {
       ctx = new InitialContext();
-      ds = (DataSource) ctx.lookup("java:comp/env/" + this._dsName);
+      ds = (DataSource) ctx.lookup("java:comp/env/" + dsName);
       if (ds == null)
         throw new NamingException();
 
     } catch (NamingException e) {
       try {
         if (ctx != null)
-          ds = (DataSource) ctx.lookup(_dsName);
+          ds = (DataSource) ctx.lookup(dsName);
       } catch (NamingException e1) {
         e1.printStackTrace();
       }
-    } finally {
-      if (ds != null)
-        _conn = ds.getConnection();
-      else
-        throw new SQLException("Could not lookup connection by name: " + _dsName);
     }
+
+    if (ds == null)
+      throw new SQLException("Could not lookup connection by name: " + dsName);
+    return ds;
   }
 
-  private synchronized String createFilterStmt() {
+  // primary key columns of the bean, values must be set
+  private BitSet createFilter() {
 
     if (_bean == null)
       throw new UnsupportedOperationException("Call #setBean() before performing database operations.");
 
-    StringBuilder sql = new StringBuilder();
-    final String and = " AND ";
-
     if (_keys == null) {
       try {
         initPK();
@@ -244,307 +220,569 @@ public class DAOImpl implements DAO {
       }
     }
 
-    for (String key : _keys) {
+    return createFilter(_bean, _keys);
+  }
+
+  private BitSet createFilter(Object bean, Set<String> keys) {
 
-      sql.append(and).append(getDbColumn(key));
+    EntityMetadata metadata = EntityMetadata.of(bean.getClass());
+    BitSet filter = new BitSet();
+    for (String key : keys) {
+
+      EntityMetadata.Property property = metadata.getProperty(key);
       Object partKeyValue = null;
       try {
-        partKeyValue = BeanUtil.getValue(key, _bean);
+        if (property != null)
+          partKeyValue = property.get(bean);
       } catch (IllegalAccessException e) {
         _logger.error(e.getMessage());
       } finally {
 
         if (partKeyValue == null) {
           String message = "Primary key value empty for database column: " + key + ", object: "
-              + _bean.getClass().getName();
+              + bean.getClass().getName();
           throw new IllegalArgumentException(message);
         }
       }
 
-      String delimiter = SchemaUtil.isNumber(partKeyValue) ? "" : "'";
-      sql.append(" = ").append(delimiter).append(partKeyValue.toString()).append(delimiter);
+      filter.set(property.index);
     }
 
-    return " WHERE " + sql.substring(and.length());
+    return filter;
   }
 
-  private String createInsertStmt() {
-
-    StringBuffer sql = new StringBuffer();
-
-    Map<String, Object> props = BeanUtil.describe(_bean);
-    String delimiter;
-    Object obj = _bean;
-
-    removeNulls(props);
-
-    if (props.isEmpty())
-      return "INSERT INTO " + _entityName + " DEFAULT VALUES";
-
-    String[] fields = new String[props.size()];
-    int j = 0;
-    for (String prop : props.keySet()) {
-      fields[j++] = prop;
-
-      sql.append(getDbColumn(prop));
-
-      if (j < fields.length)
-        sql.append(",");
-      else {
-        // fix for configured column mappings
-        String end = ",$END-OF-COLUMN65$";
-        sql.append(end);
-        sql = new StringBuffer(StringUtil.replace(sql.toString(), end, ""));
-        sql.append(") VALUES (");
-      }
+  // primary key columns known without a database round trip, or null
+  private Set<String> findKeys() {
+    if (_keys != null)
+      return _keys;
+    if (_metadata.getKeys() != null)
+      return _metadata.getKeys();
+    String url = _dbUrl;
+    if (url == null) {
+      SchemaUtil.Database database = SchemaUtil.findDatabase(_dataSource != null ? _dataSource : _dsName);
+      if (database == null)
+        return null;
+      url = database.url;
     }
+    return SchemaUtil.findPK(url, _metadata.getTable());
+  }
 
-    Iterator<Object> i = props.values().iterator();
-    j = 0;
-    while (i.hasNext()) {
-
-      Object val = i.next();
-      String oracleDate1 = "";
-      String oracleDate2 = "";
+  private boolean load(EntityCache cache, BitSet filter) {
+    try {
+      return cache.load(_metadata, EntityCache.key(_metadata, filter, _bean), _bean);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
 
-      if (_dbVendor == SchemaUtil.ORACLE) {
-        // Oracle fix for Dates
-        if (java.sql.Timestamp.class.equals(BeanUtil.getType(fields[j], obj))) {
-          oracleDate1 = "to_date(";
-          oracleDate2 = ",'yyyy-mm-dd hh24:mi:ss\".999\"')";
-        } else if (java.sql.Date.class.equals(BeanUtil.getType(fields[j], obj))) {
-          oracleDate1 = "to_date(";
-          oracleDate2 = ",'yyyy-mm-dd')";
-        }
+  private void invalidate(Collection<?> beans) {
+    Set<Class<?>> types = new HashSet<>();
+    for (Object bean : beans)
+      if (bean != null) {
+        invalidateEntity(bean);
+        if (types.add(bean.getClass()))
+          invalidateQueries(EntityMetadata.of(bean.getClass()));
       }
+  }
 
-      if (_dbVendor == SchemaUtil.MSSQL) {
-
-        // MSSQL fix for Bits/Boolean
-        Class<?> cls = BeanUtil.getType(fields[j], obj);
-
-        if (Boolean.class.equals(cls)) {
-
-          Boolean valB = (Boolean) val;
-          val = valB ? "1" : "0";
+  private void invalidate(Object bean) {
+    if (bean == null)
+      return;
+    invalidateEntity(bean);
+    invalidateQueries(EntityMetadata.of(bean.getClass()));
+  }
 
-        } else if (cls == boolean.class) {
+  private static void invalidateQueries(EntityMetadata metadata) {
+    if (metadata.getTable() != null)
+      QueryCache.invalidate(metadata.getTable());
+  }
 
-          if ("true".equals(val.toString()))
-            val = "1";
-          else
-            val = "0";
-        }
+  // removes a written row from the entity cache, the whole cache when the key
+  // is unknown (e.g. identity not read back)
+  private void invalidateEntity(Object bean) {
+    EntityMetadata metadata = EntityMetadata.of(bean.getClass());
+    EntityCache cache = metadata.getCache();
+    if (cache == null)
+      return;
+    try {
+      cache.remove(EntityCache.key(metadata, createFilter(bean, SchemaUtil.getPK(_conn, _dbUrl, metadata)), bean));
+    } catch (SQLException | IllegalAccessException | RuntimeException e) {
+      cache.clear();
+    }
+  }
 
-      }
+  // primary keys of a table, for operations on beans other than the current one
+  private Set<String> getKeys(EntityMetadata metadata) {
+    if (metadata.getTable() == null)
+      throw new RuntimeException(Table.class.getName() + " annotation missing from " + metadata.getType().getName());
+    try {
+      return SchemaUtil.getPK(_conn, _dbUrl, metadata);
+    } catch (SQLException e) {
+      _logger.error(e.getMessage());
+      throw new IllegalStateException("Primary key not found " + metadata.getTable());
+    }
+  }
 
-      Object field = null;
-      try {
-        field = BeanUtil.getValue(fields[j], obj);
-      } catch (IllegalAccessException e) {
-        _logger.error(e.getMessage());
-      }
-      delimiter = (SchemaUtil.isNumber(field)) ? "" : "'";
+  // columns with values to write, nulls are skipped unless saveNulls(true)
+  private BitSet createColumns(Object bean, BitSet exclude) {
 
-      j++;
+    BitSet columns = new BitSet();
+    for (EntityMetadata.Property property : EntityMetadata.of(bean.getClass()).getProperties())
+      if (!exclude.get(property.index) && (_keepNullsInQuery || getValue(property, bean) != null))
+        columns.set(property.index);
 
-      sql.append(oracleDate1).append(delimiter).append(StringUtil.escapeQuotes(val.toString())).append(delimiter)
-          .append(oracleDate2);
+    return columns;
+  }
 
-      if (i.hasNext())
-        sql.append(",");
-      else
-        sql.append(")");
+  // property value; with saveNulls(true) empty Strings are treated as nulls
+  private Object getValue(EntityMetadata.Property property, Object bean) {
+    Object val = null;
+    try {
+      val = property.get(bean);
+    } catch (IllegalAccessException e) {
+      _logger.error(e.getMessage());
     }
-
-    String stmt = "INSERT INTO " + _entityName + " (" + StringUtil.fixNulls(sql.toString());
-    if (_logger.isDebugEnabled())
-      _logger.debug("#insert - " + stmt);
-    return stmt;
+    if (_keepNullsInQuery && "".equals(val))
+      val = null;
+    return val;
   }
 
-  private String createSelectStmt() {
-    String stmt = "SELECT * FROM " + _entityName + createFilterStmt();
-    if (_logger.isDebugEnabled())
-      _logger.debug("#select - " + stmt);
-    return stmt;
+  private void setParams(PreparedStatement ps, SqlTemplate template, Object bean) throws SQLException {
+    int i = 0;
+    for (EntityMetadata.Property property : template.params)
+      setParam(ps, ++i, getValue(property, bean), property.type);
   }
 
-  private String createUpdateStmt() {
-
-    StringBuilder sql = new StringBuilder("UPDATE ").append(_entityName).append(" SET ");
-
-    String where = createFilterStmt();
+  @Override
+  public final boolean delete() throws SQLException {
 
-    Map<String, Object> map = new TreeMap<>(BeanUtil.describe(_bean));
+    Probe probe = begin();
+    int result = 0;
+    try {
+      connect();
+      probe.connected();
+      SqlTemplate template = SqlTemplate.delete(_metadata, _dbVendor, createFilter());
+      if (_logger.isDebugEnabled())
+        _logger.debug("#delete - " + template.sql);
+      _ps = prepare(template.sql);
+      setParams(_ps, template, _bean);
+      probe.built();
+      probe.statement(template.sql, template.params.length);
+      result = _ps.executeUpdate();
+      probe.executed();
+      if (_trackChanges)
+        ChangeTracker.remove(_bean);
+      return result == 1;
+    } catch (SQLException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
+    } finally {
+      invalidate(_bean);
+      cleanup();
+      probe.end("delete", _entityName, result);
+    }
+  }
 
-    Set<String> remove = new HashSet<>(_keys);
+  @Override
+  public int executeSql(String sql, Object[] p) throws SQLException {
+    try {
+      return executeUpdate("executeSql", null, sql, p);
+    } finally {
+      // tables written are unknown
+      EntityCache.clearAll();
+      QueryCache.clear();
+    }
+  }
 
-    for (String prop : map.keySet())
-      for (String pk : _keys)
-        if (pk.equalsIgnoreCase(prop))
-          remove.add(prop);
+  private int executeUpdate(String operation, String entity, String sql, Object[] p) throws SQLException {
 
-    for (String prop : remove)
-      map.remove(prop);
+    Probe probe = begin();
+    int result = 0;
+    try {
+      connect();
+      probe.connected();
+      _ps = prepare(sql);
+      setParams(_ps, p);
+      probe.built();
+      probe.statement(sql, p == null ? 0 : p.length);
+      result = _ps.executeUpdate();
+      probe.executed();
+      return result;
+    } catch (SQLException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
+    } finally {
+      cleanup();
+      if (_logger.isDebugEnabled())
+        _logger.debug("#" + operation + " - " + sql);
+      probe.end(operation, entity, result);
+    }
+  }
 
-    // remove null values from the bean
-    removeNulls(map);
+  @Override
+  public long export(Class<?> resultClass, String query, Object[] params, OutputStream out, Format format)
+      throws SQLException, IOException {
+    return export(resultClass, query, params, Channels.newChannel(out), format);
+  }
 
-    if (map.isEmpty())
-      throw new RuntimeException("No values to update for " + _bean.toString());
+  @Override
+  public long export(Class<?> resultClass, String query, Object[] params, WritableByteChannel out, Format format)
+      throws SQLException, IOException {
 
-    for (String colName : map.keySet()) {
-      String value = null;
-      Object oValue = map.get(colName);
+    Probe probe = begin();
+    long rows = 0;
+    boolean restoreAutoCommit = false;
+    try {
+      connect();
+      probe.connected();
+      // PostgreSQL only honors the fetch size inside a transaction
+      restoreAutoCommit = _fetchSize > 0 && _dbVendor == SchemaUtil.POSTGRESQL && _conn.getAutoCommit();
+      if (restoreAutoCommit)
+        _conn.setAutoCommit(false);
+
+      _ps = prepare(query);
+      if (_fetchSize > 0)
+        _ps.setFetchSize(_fetchSize);
+      setParams(_ps, params);
+      if (_logger.isDebugEnabled())
+        _logger.debug("#export - " + query);
+      probe.built();
+      probe.statement(query, params == null ? 0 : params.length);
+      _rs = _ps.executeQuery();
+      probe.executed();
+
+      RowEncoder encoder = new RowEncoder(_rs.getMetaData(),
+          resultClass == null ? null : EntityMetadata.of(resultClass), format, out);
+      encoder.writeHeader();
+      while (_rs.next()) {
+        encoder.write(_rs);
+        rows++;
+      }
+      encoder.flush();
+      probe.mapped();
+    } catch (SQLException | IOException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
+    } finally {
+      if (restoreAutoCommit) {
+        if (_rs != null) {
+          _rs.close();
+          _rs = null;
+        }
+        closeStatement();
+        _conn.setAutoCommit(true);
+      }
+      cleanup();
+      probe.end("export", resultClass == null ? null : EntityMetadata.of(resultClass).getTable(), rows);
+    }
+    return rows;
+  }
 
-      if (oValue != null)
-        value = StringUtil.escapeQuotes(oValue.toString());
+  @SuppressWarnings("unchecked")
+  private <T> List<T> executeQuery(Probe probe) throws SQLException {
 
-      if (value != null) {
+    List<T> result = new ArrayList<>();
 
-        String oracleDate1 = "";
-        String oracleDate2 = "";
+    if (_ps != null && _bean != null)
+      _rs = _ps.executeQuery();
+    else {
+      throw new IllegalArgumentException("#executeQuery - result bean not found!");
+    }
+    probe.executed();
 
-        if (_dbVendor == SchemaUtil.ORACLE) {
+    try {
+      Class<T> resultClass = (Class<T>) (_bean instanceof Class ? _bean : _bean.getClass());
+      Constructor<T> constructor = resultClass.getConstructor();
+      RowMapper mapper = RowMapper.of(_rs, resultClass, _skipLobs, false);
+      while (_rs.next()) {
+        T obj = constructor.newInstance();
+        mapper.map(_rs, obj);
+        result.add(obj);
+      }
+      probe.mapped();
+    } catch (ReflectiveOperationException e) {
+      e.printStackTrace();
+    } finally {
+      cleanup();
+    }
+    return result;
 
-          // Oracle fix for Dates
-          Class<?> cls = BeanUtil.getType(colName, _bean);
-          if (java.sql.Timestamp.class.equals(cls)) {
-            oracleDate1 = "to_date(";
-            oracleDate2 = ",'yyyy-mm-dd hh24:mi:ss\".999\"')";
-          } else if (java.sql.Date.class.equals(cls)) {
-            oracleDate1 = "to_date(";
-            oracleDate2 = ",'yyyy-mm-dd')";
-          }
-        }
+  }
 
-        if (_dbVendor == SchemaUtil.MSSQL) {
+  @Override
+  public <T> List<T> listOf(Class<T> resultClass, String sql, Object[] p)
+      throws SQLException, ReflectiveOperationException {
+    List<T> result = _cacheTables != null ? cachedListOf(resultClass, sql, p) : query(resultClass, sql, p);
+    if (_trackChanges)
+      for (T bean : result)
+        track(bean);
+    return result;
+  }
 
-          Class<?> cls = BeanUtil.getType(colName, _bean);
+  @Override
+  public <T> Page<T> page(Class<T> resultClass, String query, Object[] params, String[] orderBy, Object[] lastKey,
+      int pageSize) throws SQLException, ReflectiveOperationException {
+
+    if (pageSize < 1)
+      throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+    if (orderBy == null || orderBy.length == 0)
+      throw new IllegalArgumentException("Order columns are required");
+    if (lastKey != null && lastKey.length != orderBy.length)
+      throw new IllegalArgumentException("lastKey must have one value per order column: " + lastKey.length);
+
+    EntityMetadata metadata = EntityMetadata.of(resultClass);
+    EntityMetadata.Property[] keys = new EntityMetadata.Property[orderBy.length];
+    for (int i = 0; i < orderBy.length; i++) {
+      keys[i] = metadata.getProperty(SqlTemplate.orderColumn(orderBy[i]));
+      if (keys[i] == null)
+        throw new IllegalArgumentException("Order column " + orderBy[i] + " is not mapped by " + resultClass.getName());
+      if (lastKey != null && lastKey[i] == null)
+        throw new IllegalArgumentException("lastKey value of " + orderBy[i] + " is null");
+    }
 
-          // MSSQL fix for Bits/Boolean
-          if (Boolean.class.equals(cls)) {
+    int vendor = findVendor();
+    // one more row tells whether a next page exists
+    String sql = SqlTemplate.page(vendor, query, orderBy, lastKey != null, pageSize + 1);
+    List<T> rows = listOf(resultClass, sql, SqlTemplate.pageParams(vendor, orderBy, params, lastKey));
+    if (rows.size() <= pageSize)
+      return new Page<>(rows, null);
+
+    rows = rows.subList(0, pageSize);
+    T last = rows.get(pageSize - 1);
+    Object[] nextKey = new Object[keys.length];
+    for (int i = 0; i < keys.length; i++)
+      nextKey[i] = keys[i].get(last);
+    return new Page<>(rows, nextKey);
+  }
 
-            Boolean valB = null;
-            try {
-              valB = (Boolean) BeanUtil.getValue(colName, _bean);
-            } catch (IllegalAccessException e) {
-              _logger.error(e.getMessage());
-            }
+  // database vendor, without a round trip once the data source is known
+  private int findVendor() throws SQLException {
+    if (_dbUrl != null)
+      return _dbVendor;
+    SchemaUtil.Database database = SchemaUtil.findDatabase(_dataSource != null ? _dataSource : _dsName);
+    if (database != null)
+      return database.vendor;
+    connect();
+    if (!_managedConnection)
+      cleanup();
+    return _dbVendor;
+  }
 
-            if (valB == null)
-              value = null;
-            else if (valB)
-              value = "1";
-            else
-              value = "0";
-
-          } else if (cls == boolean.class) {
-            if ("true".equals(value))
-              value = "1";
-            else
-              value = "0";
-          }
-        }
+  private <T> List<T> cachedListOf(Class<T> resultClass, String sql, Object[] p)
+      throws SQLException, ReflectiveOperationException {
 
-        // do fix here for DB2 numeric types
-        String delimiter;
-        try {
-          if (SchemaUtil.isNumber(BeanUtil.getValue(colName, _bean))) {
-            delimiter = "";
-          } else
-            delimiter = "'";
-        } catch (IllegalAccessException e) {
-          delimiter = "'";
-        }
+    String[] tables = _cacheTables;
+    if (tables.length == 0) {
+      String table = EntityMetadata.of(resultClass).getTable();
+      if (table == null)
+        throw new IllegalArgumentException("Tables of the query are required, " + Table.class.getName()
+            + " annotation missing from " + resultClass.getName());
+      tables = new String[] { table };
+    }
 
-        sql.append(getDbColumn(colName)).append(" = ").append(oracleDate1).append(delimiter).append(value)
-            .append(delimiter).append(oracleDate2);
+    QueryCache.Key key = new QueryCache.Key(resultClass, sql, p);
+    List<T> result = QueryCache.get(key);
+    if (result != null) {
+      // no statement: served by the query cache
+      begin().end("listOf", EntityMetadata.of(resultClass).getTable(), result.size());
+      return result;
+    }
 
-        sql.append(", ");
-      }
+    long version = QueryCache.version();
+    connect();
+    // uncommitted rows are not cached
+    boolean autoCommit = _conn.getAutoCommit();
+    result = query(resultClass, sql, p);
+    if (!autoCommit)
+      return Collections.unmodifiableList(result);
+
+    String[] names = new String[tables.length];
+    for (int i = 0; i < tables.length; i++)
+      names[i] = tables[i].toUpperCase(Locale.ROOT);
+    return QueryCache.put(key, result, names, _cacheTtl, version);
+  }
 
+  private <T> List<T> query(Class<T> resultClass, String sql, Object[] p)
+      throws SQLException, ReflectiveOperationException {
+    Probe probe = begin();
+    List<T> result = Collections.emptyList();
+    try {
+      connect();
+      probe.connected();
+      _ps = prepare(sql);
+      if (_fetchSize > 0)
+        _ps.setFetchSize(_fetchSize);
+      setParams(_ps, p);
+      setClass(resultClass);
+      probe.built();
+      probe.statement(sql, p == null ? 0 : p.length);
+      return result = executeQuery(probe);
+    } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
+    } finally {
+      probe.end("listOf", EntityMetadata.of(resultClass).getTable(), result.size());
     }
+  }
 
-    String sql2 = sql.substring(0, sql.length() - 2) + where;
-
-    sql2 = StringUtil.fixNulls(sql2);
-    return sql2;
+  @Override
+  public <T> Cursor<T> cursor(Class<T> resultClass, String sql, Object[] params)
+      throws SQLException, ReflectiveOperationException {
+    return openCursor(resultClass, sql, params);
   }
 
   @Override
-  public final boolean delete() throws SQLException {
+  public <T> Stream<T> stream(Class<T> resultClass, String sql, Object[] params)
+      throws SQLException, ReflectiveOperationException {
+    ResultCursor<T> cursor = openCursor(resultClass, sql, params);
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(cursor::closeQuietly);
+  }
+
+  private <T> ResultCursor<T> openCursor(Class<T> resultClass, String sql, Object[] params)
+      throws SQLException, ReflectiveOperationException {
 
+    Constructor<T> constructor = resultClass.getConstructor();
     connect();
+    Connection conn = _conn;
+    final boolean autoCommit = conn.getAutoCommit();
+
+    // the cursor takes over a connection that cleanup() would otherwise close
+    final boolean owned = autoCommit && !_managedConnection;
+    if (owned) {
+      _conn = null;
+      _statements = null;
+    }
+
+    // PostgreSQL only honors the fetch size inside a transaction
+    final boolean restoreAutoCommit = autoCommit && _fetchSize > 0 && _dbVendor == SchemaUtil.POSTGRESQL;
 
+    PreparedStatement ps = null;
     try {
-      String sql = "DELETE FROM " + _entityName + createFilterStmt();
+      if (restoreAutoCommit)
+        conn.setAutoCommit(false);
+      ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      if (_fetchSize > 0)
+        ps.setFetchSize(_fetchSize);
+      setParams(ps, params);
       if (_logger.isDebugEnabled())
-        _logger.debug("#delete - " + sql);
-      _stmt = _conn.createStatement();
-      int result = _stmt.executeUpdate(sql);
-      return result == 1;
-    } finally {
-      cleanup();
+        _logger.debug("#cursor - " + sql);
+      ResultSet rs = ps.executeQuery();
+      closeStreams();
+      return new ResultCursor<>(conn, ps, rs, constructor, _skipLobs, owned, restoreAutoCommit);
+    } catch (SQLException | RuntimeException e) {
+      if (ps != null)
+        ps.close();
+      if (restoreAutoCommit)
+        conn.setAutoCommit(true);
+      if (owned)
+        conn.close();
+      throw e;
     }
   }
 
   @Override
-  public int executeSql(String sql, Object[] p) throws SQLException {
+  public <T> long forEach(Class<T> resultClass, String sql, Object[] params, RowHandler<? super T> handler)
+      throws SQLException, ReflectiveOperationException {
+    return forEach(resultClass, sql, params, false, handler);
+  }
+
+  @Override
+  public <T> long forEach(Class<T> resultClass, String sql, Object[] params, boolean reuseBean,
+      RowHandler<? super T> handler) throws SQLException, ReflectiveOperationException {
 
+    Constructor<T> constructor = resultClass.getConstructor();
+    T bean = reuseBean ? constructor.newInstance() : null;
+    Probe probe = begin();
+    long rows = 0;
     try {
       connect();
-      _ps = _conn.prepareStatement(sql);
-      setParams(p);
-      return _ps.executeUpdate();
+      probe.connected();
+      _ps = prepare(sql);
+      if (_fetchSize > 0)
+        _ps.setFetchSize(_fetchSize);
+      setParams(_ps, params);
+      if (_logger.isDebugEnabled())
+        _logger.debug("#forEach - " + sql);
+      probe.built();
+      probe.statement(sql, params == null ? 0 : params.length);
+      _rs = _ps.executeQuery();
+      probe.executed();
+
+      RowMapper mapper = RowMapper.of(_rs, resultClass, _skipLobs, true);
+      while (_rs.next()) {
+        T obj = reuseBean ? bean : constructor.newInstance();
+        mapper.map(_rs, obj);
+        handler.handle(obj);
+        rows++;
+      }
+      // includes the time spent in the handler
+      probe.mapped();
+    } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
     } finally {
       cleanup();
-      if (_logger.isDebugEnabled())
-        _logger.debug("#executeSql - " + sql);
+      probe.end("forEach", EntityMetadata.of(resultClass).getTable(), rows);
     }
+    return rows;
   }
 
-  @SuppressWarnings("unchecked")
-  private <T> List<T> executeQuery() throws SQLException {
-
-    List<T> result = new ArrayList<>();
-
-    if (_ps != null && _bean != null)
-      _rs = _ps.executeQuery();
-    else {
-      throw new IllegalArgumentException("#executeQuery - result bean not found!");
-    }
+  @Override
+  public DAO fetchSize(int rows) {
+    _fetchSize = rows;
+    return this;
+  }
 
-    while (_rs != null && _rs.next()) {
-      try {
-        T obj;
-        if (_bean instanceof Class)
-          obj = ((Class<T>) _bean).getConstructor().newInstance();
-        else
-          obj = (T) _bean.getClass().getConstructor().newInstance();
+  @Override
+  public DAO skipLobs(boolean skip) {
+    _skipLobs = skip;
+    return this;
+  }
 
-        setValues(_rs, obj);
-        result.add(obj);
+  @Override
+  public DAO trackChanges(boolean track) {
+    _trackChanges = track;
+    return this;
+  }
 
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+  private static void track(Object bean) {
+    try {
+      ChangeTracker.snapshot(EntityMetadata.of(bean.getClass()), bean);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
     }
+  }
 
-    cleanup();
-    return result;
+  // changed columns of a tracked bean, or null when the bean was not read
+  private static BitSet findChanges(Object bean, EntityMetadata metadata, BitSet filter) {
+    try {
+      return ChangeTracker.getChanges(metadata, bean, filter);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
 
+  @Override
+  public DAO cacheResults(long ttlSeconds, String... tables) {
+    if (ttlSeconds < 0)
+      throw new IllegalArgumentException("ttlSeconds must not be negative: " + ttlSeconds);
+    _cacheTtl = ttlSeconds;
+    _cacheTables = tables == null ? new String[0] : tables.clone();
+    return this;
   }
 
   @Override
-  public <T> List<T> listOf(Class<T> resultClass, String sql, Object[] p)
-      throws SQLException, ReflectiveOperationException {
-    connect();
-    _ps = this._conn.prepareStatement(sql);
-    setParams(p);
-    setClass(resultClass);
-    return executeQuery();
+  public DAO statementCacheSize(int statements) {
+    if (!_managedConnection)
+      _logger.debug("#statementCacheSize - ignored, connection is not managed by the caller");
+    else {
+      if (_statements != null)
+        _statements.clear();
+      _statements = statements > 0 ? new StatementCache(_conn, statements, new StatementCache.Counters()) : null;
+    }
+    return this;
   }
 
   private String getEntity() {
@@ -552,32 +790,22 @@ public class DAOImpl implements DAO {
   }
 
   private void setEntity(Class<?> cls) {
-    if (entityMap.containsKey(cls.getName()))
-      _entityName = entityMap.get(cls.getName());
-    else {
-      if (!cls.isAnnotationPresent(Table.class))
-        throw new RuntimeException(Table.class.getName() + " annotation missing from " + cls.getName());
-      _entityName = cls.getAnnotation(Table.class).value();
-      entityMap.put(cls.getName(), _entityName);
-
-    }
+    _metadata = EntityMetadata.of(cls);
+    if (_metadata.getTable() == null)
+      throw new RuntimeException(Table.class.getName() + " annotation missing from " + cls.getName());
+    _entityName = _metadata.getTable();
     _keys = null; // v202
   }
 
   private String getDbColumn(String prop) {
-
-    for (Field field : BeanUtil.getFields(_bean.getClass()))
-      if (field.getName().equalsIgnoreCase(prop))
-        return field.isAnnotationPresent(Column.class) ? field.getAnnotation(Column.class).value() : prop.toUpperCase();
-
-    return prop.toUpperCase();
+    return _metadata.getColumn(prop);
   }
 
   // initialize; setup primary keys
   private void initPK() throws SQLException {
     _keys = null;
     if (getEntity() != null)
-      _keys = SchemaUtil.getPK(_conn, getEntity());
+      _keys = SchemaUtil.getPK(_conn, _dbUrl, _metadata);
     else
       _logger.warn("Call DAO#setBean() first");
   }
@@ -585,37 +813,34 @@ public class DAOImpl implements DAO {
   @Override
   public final int insert() throws SQLException {
 
-    connect();
+    Probe probe = begin();
     int recordsAffected = 0;
-    try {
-      if (_keys == null)
-        initPK();
-    } catch (SQLException e) {
-      _logger.warn(e.getMessage());
-    }
-
     long result;
     try {
-      String sql = createInsertStmt();
-      _logger.debug("#insert - " + sql);
-      _stmt = _conn.createStatement();
-      boolean supportsGetGeneratedKeys = _conn.getMetaData().supportsGetGeneratedKeys();
-      if (supportsGetGeneratedKeys)
-        if (_dbVendor == SchemaUtil.ORACLE) {
-          if (_keys != null && _keys.size() == 1) {
-            String pk = _keys.iterator().next();
-            result = _stmt.executeUpdate(sql, new String[] { getDbColumn(pk) });
-          } else
-            result = _stmt.executeUpdate(sql);
-        } else
-          result = _stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
-      else
-        result = _stmt.executeUpdate(sql);
+      connect();
+      probe.connected();
+      try {
+        if (_keys == null)
+          initPK();
+      } catch (SQLException e) {
+        _logger.warn(e.getMessage());
+      }
+
+      SqlTemplate template = SqlTemplate.insert(_metadata, _dbVendor, createColumns(_bean, new BitSet()));
+      String sql = template.sql;
+      if (_logger.isDebugEnabled())
+        _logger.debug("#insert - " + sql);
+      boolean supportsGetGeneratedKeys = supportsGetGeneratedKeys();
+      _ps = prepareInsert(sql, _keys, _metadata);
+      setParams(_ps, template, _bean);
+      probe.built();
+      probe.statement(sql, template.params.length);
+      result = _ps.executeUpdate();
 
       if (result == 1 && supportsGetGeneratedKeys && _keys != null) {
 
         recordsAffected = 1;
-        _rs = _stmt.getGeneratedKeys();
+        _rs = _ps.getGeneratedKeys();
         if (_rs.next()) {
 
           final String pkProperty = _keys.iterator().next();
@@ -623,94 +848,560 @@ public class DAOImpl implements DAO {
           if (_logger.isTraceEnabled())
             _logger.trace("#insert - attempting to set identity value " + pkProperty);
 
-          Object keyVal = _rs.getObject(1);
-          if (keyVal != null) {
-            if (keyVal instanceof Long) {
-              if ((Long) keyVal > 0)
-                BeanUtil.setValue(pkProperty, _bean, keyVal);
-            } else if (keyVal instanceof Integer) {
-              if ((Integer) keyVal > 0)
-                BeanUtil.setValue(pkProperty, _bean, keyVal);
-            } else
-              BeanUtil.setValue(pkProperty, _bean, keyVal);
-          }
-
+          setGeneratedKey(_bean, pkProperty, _rs.getObject(1));
         }
       } else
         recordsAffected = result == 1 ? 1 : -1;
+      probe.executed();
 
     } catch (SQLException e) {
       _logger.error(e.getMessage(), e);
+      probe.fail(e);
+      throw e;
+    } catch (RuntimeException e) {
+      probe.fail(e);
       throw e;
     } finally {
+      invalidate(_bean);
       cleanup();
+      probe.end("insert", _entityName, Math.max(recordsAffected, 0));
     }
     return recordsAffected;
   }
 
-  private void cleanup() throws SQLException {
+  private boolean supportsGetGeneratedKeys() {
+    return _generatedKeys;
+  }
 
-    if (_conn == null || !_conn.getAutoCommit())
-      return;
+  private PreparedStatement prepareInsert(String sql, Set<String> keys, EntityMetadata metadata)
+      throws SQLException {
+    if (supportsGetGeneratedKeys())
+      if (_dbVendor == SchemaUtil.ORACLE) {
+        if (keys != null && keys.size() == 1)
+          return _conn.prepareStatement(sql, new String[] { metadata.getColumn(keys.iterator().next()) });
+        else
+          return _conn.prepareStatement(sql);
+      } else
+        return _conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
     else
-      _conn.close();
+      return _conn.prepareStatement(sql);
+  }
 
-    if (_rs != null)
-      _rs.close();
+  // any non-null key is valid, identity columns may start at 0 (HSQLDB)
+  private static void setGeneratedKey(Object bean, String pkProperty, Object keyVal) {
+    if (keyVal != null)
+      BeanUtil.setValue(pkProperty, bean, keyVal);
+  }
 
-    if (_stmt != null)
-      _stmt.close();
+  @Override
+  public int insertAll(Collection<?> beans, int batchSize) throws SQLException {
 
-    if (_ps != null)
-      _ps.close();
+    if (batchSize < 1)
+      throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
 
-    if (_logger.isTraceEnabled())
-      _logger.info("#cleanup executed, connection closed");
+    Probe probe = begin();
+    connect(probe, "insertAll", null);
+    int recordsAffected = 0;
+    final boolean autoCommit = _conn.getAutoCommit();
+    if (autoCommit)
+      _conn.setAutoCommit(false);
+    try {
+      for (Map.Entry<SqlTemplate, List<Object>> group : groupInserts(beans).entrySet())
+        recordsAffected += insertBatch(group.getKey(), group.getValue(), batchSize, probe);
+      if (autoCommit)
+        _conn.commit();
+      probe.executed();
+    } catch (SQLException | RuntimeException e) {
+      if (autoCommit)
+        _conn.rollback();
+      _logger.error(e.getMessage(), e);
+      probe.fail(e);
+      throw e;
+    } finally {
+      if (autoCommit && !_conn.isClosed())
+        _conn.setAutoCommit(true);
+      invalidate(beans);
+      cleanup();
+      probe.end("insertAll", null, recordsAffected);
+    }
+    return recordsAffected;
+  }
+
+  @Override
+  public int insertValues(Collection<?> beans) throws SQLException {
+
+    Probe probe = begin();
+    connect(probe, "insertValues", null);
+    // insertAll reports its own event
+    if (_dbVendor == SchemaUtil.ORACLE)
+      return insertAll(beans, BATCH_SIZE);
+
+    int recordsAffected = 0;
+    final boolean autoCommit = _conn.getAutoCommit();
+    if (autoCommit)
+      _conn.setAutoCommit(false);
+    try {
+      for (Map.Entry<SqlTemplate, List<Object>> group : groupInserts(beans).entrySet()) {
+
+        List<Object> rows = group.getValue();
+        int maxRows = SchemaUtil.getMaxInsertRows(_dbVendor, group.getKey().params.length);
+        if (group.getKey().params.length == 0 || maxRows < 2) {
+          recordsAffected += insertBatch(group.getKey(), rows, BATCH_SIZE, probe);
+          continue;
+        }
+
+        EntityMetadata metadata = EntityMetadata.of(rows.get(0).getClass());
+        BitSet columns = createColumns(rows.get(0), new BitSet());
+        // only full statements are multi-row, one cached template per column set
+        int full = rows.size() - rows.size() % maxRows;
+        for (int start = 0; start < full; start += maxRows) {
 
+          List<Object> chunk = rows.subList(start, start + maxRows);
+          SqlTemplate template = SqlTemplate.insert(metadata, _dbVendor, columns, maxRows);
+          if (_logger.isDebugEnabled())
+            _logger.debug("#insertValues - " + chunk.size() + " rows, " + metadata.getTable());
+
+          _ps = prepare(template.sql);
+          try {
+            int i = 0;
+            for (Object bean : chunk)
+              for (EntityMetadata.Property property : template.params)
+                setParam(_ps, ++i, getValue(property, bean), property.type);
+            probe.built();
+            probe.statement(template.sql, i);
+            recordsAffected += _ps.executeUpdate();
+            probe.executed();
+          } finally {
+            closeStatement();
+          }
+        }
+        if (full < rows.size())
+          recordsAffected += insertBatch(group.getKey(), rows.subList(full, rows.size()), BATCH_SIZE, probe);
+      }
+      if (autoCommit)
+        _conn.commit();
+      probe.executed();
+    } catch (SQLException | RuntimeException e) {
+      if (autoCommit)
+        _conn.rollback();
+      _logger.error(e.getMessage(), e);
+      probe.fail(e);
+      throw e;
+    } finally {
+      if (autoCommit && !_conn.isClosed())
+        _conn.setAutoCommit(true);
+      invalidate(beans);
+      cleanup();
+      probe.end("insertValues", null, recordsAffected);
+    }
+    return recordsAffected;
   }
 
-  private void removeNulls(Map<String, Object> map) {
+  // beans grouped by statement, i.e. by table and non-null column set
+  private Map<SqlTemplate, List<Object>> groupInserts(Collection<?> beans) {
 
-    Set<String> keysToRemove = new HashSet<>();
+    Map<SqlTemplate, List<Object>> groups = new LinkedHashMap<>();
+    for (Object bean : beans) {
+      EntityMetadata metadata = EntityMetadata.of(bean.getClass());
+      if (metadata.getTable() == null)
+        throw new RuntimeException(Table.class.getName() + " annotation missing from " + bean.getClass().getName());
+      SqlTemplate template = SqlTemplate.insert(metadata, _dbVendor, createColumns(bean, new BitSet()));
+      groups.computeIfAbsent(template, k -> new ArrayList<>()).add(bean);
+    }
+    return groups;
+  }
 
-    for (String key : map.keySet()) {
+  private int insertBatch(SqlTemplate template, List<Object> beans, int batchSize, Probe probe) throws SQLException {
+
+    EntityMetadata metadata = EntityMetadata.of(beans.get(0).getClass());
+    Set<String> keys = null;
+    try {
+      keys = SchemaUtil.getPK(_conn, _dbUrl, metadata);
+    } catch (SQLException e) {
+      _logger.warn(e.getMessage());
+    }
 
-      if (_keepNullsInQuery) {
-        // for empty Strings put null
-        if (map.get(key) == null || "".equals(map.get(key)))
-          map.put(key, "null");
-      } else {
-        if (map.get(key) == null)
-          keysToRemove.add(key);
+    // identity values are only read back when the key is not part of the insert
+    String pkProperty = null;
+    if (keys != null && supportsGetGeneratedKeys()) {
+      pkProperty = keys.iterator().next();
+      EntityMetadata.Property pk = metadata.getProperty(pkProperty);
+      for (EntityMetadata.Property param : template.params)
+        if (param == pk)
+          pkProperty = null;
+    }
+
+    if (_logger.isDebugEnabled())
+      _logger.debug("#insertAll - " + beans.size() + " x " + template.sql);
+
+    int recordsAffected = 0;
+    _ps = prepareInsert(template.sql, keys, metadata);
+    try {
+      for (int start = 0; start < beans.size(); start += batchSize) {
+
+        List<Object> batch = beans.subList(start, Math.min(start + batchSize, beans.size()));
+        for (Object bean : batch) {
+          setParams(_ps, template, bean);
+          _ps.addBatch();
+        }
+        probe.built();
+        probe.statement(template.sql, template.params.length);
+
+        for (int count : _ps.executeBatch())
+          recordsAffected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+
+        if (pkProperty != null)
+          try (ResultSet keysRs = _ps.getGeneratedKeys()) {
+            for (Object bean : batch)
+              if (keysRs.next())
+                setGeneratedKey(bean, pkProperty, keysRs.getObject(1));
+              else
+                break;
+          }
+        probe.executed();
       }
+    } finally {
+      _ps.close();
+      _ps = null;
+      closeStreams();
     }
-    // remove keys from map
-    for (String key : keysToRemove)
-      map.remove(key);
+    return recordsAffected;
+  }
 
+  @Override
+  public int[] updateAll(Collection<?> beans) throws SQLException {
+    return executeAll(beans, SqlTemplate.UPDATE);
   }
 
   @Override
-  public int save() throws SQLException {
+  public int[] deleteAll(Collection<?> beans) throws SQLException {
+    return executeAll(beans, SqlTemplate.DELETE);
+  }
 
-    connect();
-    int updatedRecords = 0;
+  // batch update or delete; counts are returned in the order of the beans
+  private int[] executeAll(Collection<?> beans, char kind) throws SQLException {
+
+    Probe probe = begin();
+    connect(probe, kind == SqlTemplate.UPDATE ? "updateAll" : "deleteAll", null);
+    int[] counts = new int[beans.size()];
     final boolean autoCommit = _conn.getAutoCommit();
     if (autoCommit)
       _conn.setAutoCommit(false);
     try {
-      // String filter = createFilterStmt();
+
+      Map<SqlTemplate, List<Integer>> groups = new LinkedHashMap<>();
+      Map<SqlTemplate, List<Integer>> unchanged = new LinkedHashMap<>();
+      Object[] rows = beans.toArray();
+      for (int i = 0; i < rows.length; i++) {
+        EntityMetadata metadata = EntityMetadata.of(rows[i].getClass());
+        BitSet filter = createFilter(rows[i], getKeys(metadata));
+        SqlTemplate template;
+        if (kind == SqlTemplate.UPDATE) {
+          BitSet changes = _trackChanges ? findChanges(rows[i], metadata, filter) : null;
+          if (changes != null && changes.isEmpty()) {
+            // nothing to write, only checked for existence below
+            unchanged.computeIfAbsent(SqlTemplate.exists(metadata, _dbVendor, filter), k -> new ArrayList<>()).add(i);
+            continue;
+          }
+          BitSet columns = changes != null ? changes : createColumns(rows[i], filter);
+          if (columns.isEmpty())
+            throw new RuntimeException("No values to update for " + rows[i].toString());
+          template = SqlTemplate.update(metadata, _dbVendor, columns, filter);
+        } else
+          template = SqlTemplate.delete(metadata, _dbVendor, filter);
+        groups.computeIfAbsent(template, k -> new ArrayList<>()).add(i);
+      }
+
+      for (Map.Entry<SqlTemplate, List<Integer>> group : groups.entrySet()) {
+
+        SqlTemplate template = group.getKey();
+        List<Integer> indexes = group.getValue();
+        if (_logger.isDebugEnabled())
+          _logger.debug("#executeAll - " + indexes.size() + " x " + template.sql);
+
+        _ps = prepare(template.sql);
+        try {
+          for (int start = 0; start < indexes.size(); start += BATCH_SIZE) {
+            List<Integer> batch = indexes.subList(start, Math.min(start + BATCH_SIZE, indexes.size()));
+            for (int i : batch) {
+              setParams(_ps, template, rows[i]);
+              _ps.addBatch();
+            }
+            probe.built();
+            probe.statement(template.sql, template.params.length);
+            int[] result = _ps.executeBatch();
+            probe.executed();
+            for (int j = 0; j < result.length; j++)
+              counts[batch.get(j)] = result[j];
+          }
+        } finally {
+          closeStatement();
+        }
+      }
+
+      for (Map.Entry<SqlTemplate, List<Integer>> check : unchanged.entrySet()) {
+        SqlTemplate template = check.getKey();
+        _ps = prepare(template.sql);
+        try {
+          for (int i : check.getValue()) {
+            probe.built();
+            probe.statement(template.sql, template.params.length);
+            counts[i] = exists(_ps, template, rows[i]) ? 1 : 0;
+            probe.executed();
+          }
+        } finally {
+          closeStatement();
+        }
+      }
+
+      if (autoCommit)
+        _conn.commit();
+      if (_trackChanges)
+        for (Object row : rows)
+          if (kind == SqlTemplate.UPDATE)
+            track(row);
+          else
+            ChangeTracker.remove(row);
+    } catch (SQLException | RuntimeException e) {
+      if (autoCommit)
+        _conn.rollback();
+      _logger.error(e.getMessage(), e);
+      probe.fail(e);
+      throw e;
+    } finally {
+      if (autoCommit && !_conn.isClosed())
+        _conn.setAutoCommit(true);
+      invalidate(beans);
+      cleanup();
+      if (probe != Probe.NONE)
+        probe.end(kind == SqlTemplate.UPDATE ? "updateAll" : "deleteAll", null, sum(counts));
+    }
+    return counts;
+  }
+
+  // runs an EXISTS template for the bean's keys
+  private boolean exists(PreparedStatement ps, SqlTemplate template, Object bean) throws SQLException {
+    setParams(ps, template, bean);
+    try (ResultSet rs = ps.executeQuery()) {
+      return rs.next();
+    }
+  }
+
+  private static long sum(int[] counts) {
+    long sum = 0;
+    for (int count : counts)
+      sum += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+    return sum;
+  }
+
+  @Override
+  public int deleteWhere(Class<?> entityClass, String where, Object[] params) throws SQLException {
+
+    EntityMetadata metadata = EntityMetadata.of(entityClass);
+    if (metadata.getTable() == null)
+      throw new RuntimeException(Table.class.getName() + " annotation missing from " + entityClass.getName());
+
+    try {
+      return executeUpdate("deleteWhere", metadata.getTable(), "DELETE FROM " + metadata.getTable() + createWhere(where),
+          params);
+    } finally {
+      if (metadata.getCache() != null)
+        metadata.getCache().clear();
+      invalidateQueries(metadata);
+    }
+  }
+
+  @Override
+  public int updateWhere(Class<?> entityClass, Map<String, ?> values, String where, Object[] params)
+      throws SQLException {
+
+    EntityMetadata metadata = EntityMetadata.of(entityClass);
+    if (metadata.getTable() == null)
+      throw new RuntimeException(Table.class.getName() + " annotation missing from " + entityClass.getName());
+    if (values.isEmpty())
+      throw new IllegalArgumentException("No values to update for " + metadata.getTable());
+
+    StringBuilder sql = new StringBuilder("UPDATE ").append(metadata.getTable()).append(" SET ");
+    Object[] p = new Object[values.size() + (params == null ? 0 : params.length)];
+    Class<?>[] types = new Class<?>[p.length];
+    int i = 0;
+    for (Map.Entry<String, ?> value : values.entrySet()) {
+      EntityMetadata.Property property = metadata.getProperty(value.getKey());
+      if (i > 0)
+        sql.append(", ");
+      sql.append(property == null ? value.getKey().toUpperCase() : property.column).append(" = ?");
+      types[i] = property == null ? Object.class : property.type;
+      p[i++] = value.getValue();
+    }
+    sql.append(createWhere(where));
+    if (params != null)
+      System.arraycopy(params, 0, p, i, params.length);
+
+    Probe probe = begin();
+    int result = 0;
+    try {
+      connect();
+      probe.connected();
+      _ps = prepare(sql.toString());
+      for (int j = 0; j < p.length; j++)
+        setParam(_ps, j + 1, p[j], types[j]);
+      probe.built();
+      probe.statement(sql.toString(), p.length);
+      result = _ps.executeUpdate();
+      probe.executed();
+      return result;
+    } catch (SQLException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
+    } finally {
+      if (metadata.getCache() != null)
+        metadata.getCache().clear();
+      invalidateQueries(metadata);
+      cleanup();
       if (_logger.isDebugEnabled())
-        _logger.debug("#save - update existing record");
-      updatedRecords = update();
+        _logger.debug("#updateWhere - " + sql);
+      probe.end("updateWhere", metadata.getTable(), result);
+    }
+  }
 
-      if (updatedRecords != 1)
-        throw new RuntimeException();
+  private static String createWhere(String where) {
+    return where == null || where.trim().isEmpty() ? "" : " WHERE " + where;
+  }
 
-    } catch (RuntimeException e) {
+  // cached statements go back to the cache, others are closed
+  private void closeStatement() throws SQLException {
+    if (_ps != null) {
+      if (_statements != null)
+        _statements.release(_ps);
+      else
+        _ps.close();
+      _ps = null;
+    }
+    closeStreams();
+  }
+
+  private void closeStreams() throws SQLException {
+    if (_streams == null || _streams.isEmpty())
+      return;
+    IOException failure = null;
+    for (InputStream in : _streams)
+      try {
+        in.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    _streams.clear();
+    if (failure != null)
+      throw new SQLException("Error closing a file parameter", failure);
+  }
+
+  private PreparedStatement prepare(String sql) throws SQLException {
+    return _statements == null ? _conn.prepareStatement(sql) : _statements.prepare(sql);
+  }
+
+  // the DAO's probe when listeners are registered, allocated on first use
+  private Probe begin() {
+    if (!Probe.active())
+      return Probe.NONE;
+    if (_probe == null)
+      _probe = new Probe();
+    return _probe.start();
+  }
+
+  // connection of a probed operation that connects before its try block, e.g.
+  // to read auto-commit; a failure ends the probe
+  private void connect(Probe probe, String operation, String entity) throws SQLException {
+    try {
+      connect();
+    } catch (SQLException | RuntimeException e) {
+      probe.fail(e);
+      probe.end(operation, entity, 0);
+      throw e;
+    }
+    probe.connected();
+  }
+
+  private void cleanup() throws SQLException {
+
+    if (_rs != null) {
+      _rs.close();
+      _rs = null;
+    }
+
+    closeStatement();
+
+    if (_conn == null || !_conn.getAutoCommit())
+      return;
+    else {
+      _conn.close();
+      if (!_managedConnection)
+        _statements = null;
+    }
+
+    if (_logger.isTraceEnabled())
+      _logger.info("#cleanup executed, connection closed");
+
+  }
+
+  @Override
+  public int save() throws SQLException {
+
+    Probe probe = begin();
+    connect(probe, "save", _entityName);
+    BitSet filter = _bean == null ? null : findFilter(_bean, _metadata);
+    if (filter == null) {
+      // new row, or no primary key: the database assigns the key
       if (_logger.isDebugEnabled())
         _logger.debug("#save - insert new record");
-      updatedRecords = insert();
+      return insert();
+    }
+
+    if (SqlTemplate.supportsUpsert(_dbVendor)) {
+      SqlTemplate template = SqlTemplate.upsert(_metadata, _dbVendor, createColumns(_bean, new BitSet()), filter);
+      int result = 0;
+      try {
+        if (_logger.isDebugEnabled())
+          _logger.debug("#save - " + template.sql);
+        _ps = prepare(template.sql);
+        setParams(_ps, template, _bean);
+        probe.built();
+        probe.statement(template.sql, template.params.length);
+        result = _ps.executeUpdate();
+        probe.executed();
+        return result;
+      } catch (SQLException | RuntimeException e) {
+        probe.fail(e);
+        throw e;
+      } finally {
+        invalidate(_bean);
+        cleanup();
+        probe.end("save", _entityName, result);
+      }
+    }
+
+    // update() and insert() report their own events
+
+    int updatedRecords = 0;
+    final boolean autoCommit = _conn.getAutoCommit();
+    if (autoCommit)
+      _conn.setAutoCommit(false);
+    try {
+      if (!createColumns(_bean, filter).isEmpty()) {
+        if (_logger.isDebugEnabled())
+          _logger.debug("#save - update existing record");
+        updatedRecords = update();
+      }
+      if (updatedRecords != 1) {
+        if (_logger.isDebugEnabled())
+          _logger.debug("#save - insert new record");
+        updatedRecords = insert();
+      }
+      if (autoCommit)
+        _conn.commit();
+    } catch (SQLException | RuntimeException e) {
+      if (autoCommit)
+        _conn.rollback();
+      throw e;
     } finally {
       if (autoCommit && !_conn.isClosed()) {
         _conn.setAutoCommit(true);
@@ -720,6 +1411,106 @@ public class DAOImpl implements DAO {
     return updatedRecords;
   }
 
+  @Override
+  public int saveAll(Collection<?> beans) throws SQLException {
+
+    Probe probe = begin();
+    connect(probe, "saveAll", null);
+    final boolean upsert = SqlTemplate.supportsUpsert(_dbVendor);
+    int recordsAffected = 0;
+    final boolean autoCommit = _conn.getAutoCommit();
+    if (autoCommit)
+      _conn.setAutoCommit(false);
+    try {
+
+      // upserts (or updates, without native upsert) grouped by statement
+      Map<SqlTemplate, List<Object>> groups = new LinkedHashMap<>();
+      List<Object> inserts = new ArrayList<>();
+      for (Object bean : beans) {
+        EntityMetadata metadata = EntityMetadata.of(bean.getClass());
+        if (metadata.getTable() == null)
+          throw new RuntimeException(Table.class.getName() + " annotation missing from " + bean.getClass().getName());
+        BitSet filter = findFilter(bean, metadata);
+        BitSet columns = filter == null ? null : createColumns(bean, upsert ? new BitSet() : filter);
+        if (filter == null || columns.isEmpty())
+          inserts.add(bean);
+        else
+          groups.computeIfAbsent(upsert ? SqlTemplate.upsert(metadata, _dbVendor, columns, filter)
+              : SqlTemplate.update(metadata, _dbVendor, columns, filter), k -> new ArrayList<>()).add(bean);
+      }
+
+      for (Map.Entry<SqlTemplate, List<Object>> group : groups.entrySet()) {
+
+        SqlTemplate template = group.getKey();
+        List<Object> rows = group.getValue();
+        if (_logger.isDebugEnabled())
+          _logger.debug("#saveAll - " + rows.size() + " x " + template.sql);
+
+        _ps = prepare(template.sql);
+        try {
+          for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            List<Object> batch = rows.subList(start, Math.min(start + BATCH_SIZE, rows.size()));
+            for (Object bean : batch) {
+              setParams(_ps, template, bean);
+              _ps.addBatch();
+            }
+            probe.built();
+            probe.statement(template.sql, template.params.length);
+            int[] result = _ps.executeBatch();
+            probe.executed();
+            for (int j = 0; j < result.length; j++)
+              if (!upsert && result[j] == 0)
+                inserts.add(batch.get(j));
+              else
+                recordsAffected += result[j] == Statement.SUCCESS_NO_INFO ? 1 : Math.max(result[j], 0);
+          }
+        } finally {
+          closeStatement();
+        }
+      }
+
+      for (Map.Entry<SqlTemplate, List<Object>> group : groupInserts(inserts).entrySet())
+        recordsAffected += insertBatch(group.getKey(), group.getValue(), BATCH_SIZE, probe);
+
+      if (autoCommit)
+        _conn.commit();
+      probe.executed();
+    } catch (SQLException | RuntimeException e) {
+      if (autoCommit)
+        _conn.rollback();
+      _logger.error(e.getMessage(), e);
+      probe.fail(e);
+      throw e;
+    } finally {
+      if (autoCommit && !_conn.isClosed())
+        _conn.setAutoCommit(true);
+      invalidate(beans);
+      cleanup();
+      probe.end("saveAll", null, recordsAffected);
+    }
+    return recordsAffected;
+  }
+
+  // primary key columns of a bean, or null when the table has no primary key or
+  // a key value is missing (a new row)
+  private BitSet findFilter(Object bean, EntityMetadata metadata) {
+    Set<String> keys;
+    try {
+      keys = SchemaUtil.getPK(_conn, _dbUrl, metadata);
+    } catch (SQLException e) {
+      _logger.warn(e.getMessage());
+      return null;
+    }
+    BitSet filter = new BitSet();
+    for (String key : keys) {
+      EntityMetadata.Property property = metadata.getProperty(key);
+      if (property == null || getValue(property, bean) == null)
+        return null;
+      filter.set(property.index);
+    }
+    return filter;
+  }
+
   @Override
   public DAO saveNulls(boolean updateNulls) {
     _keepNullsInQuery = updateNulls;
@@ -729,23 +1520,61 @@ public class DAOImpl implements DAO {
   @Override
   public boolean select() throws SQLException {
 
-    connect();
+    Probe probe = begin();
+    EntityCache cache = _bean == null ? null : _metadata.getCache();
+    long cacheVersion = 0;
+    if (cache != null) {
+      Set<String> keys = findKeys();
+      if (keys != null && load(cache, createFilter(_bean, keys))) {
+        if (_trackChanges)
+          track(_bean);
+        // no statement: served by the entity cache
+        probe.end("select", _entityName, 1);
+        return true;
+      }
+      cacheVersion = cache.version();
+    }
 
+    boolean result = false;
     try {
-      boolean result;
-      String sql = createSelectStmt();
-      _stmt = _conn.createStatement();
+      connect();
+      probe.connected();
+      BitSet filter = createFilter();
+      SqlTemplate template = SqlTemplate.select(_metadata, _dbVendor, filter);
       if (_logger.isDebugEnabled())
-        _logger.debug("#update - " + sql);
-      ResultSet resultset = _stmt.executeQuery(sql);
-
-      if ((result = resultset.next()))
-        setValues(resultset, _bean);
+        _logger.debug("#select - " + template.sql);
+      Object cacheKey = cache == null ? null : EntityCache.key(_metadata, filter, _bean);
+      _ps = prepare(template.sql);
+      setParams(_ps, template, _bean);
+      probe.built();
+      probe.statement(template.sql, template.params.length);
+      _rs = _ps.executeQuery();
+      probe.executed();
+
+      if ((result = _rs.next())) {
+        RowMapper mapper = RowMapper.of(_rs, _bean.getClass(), _skipLobs, false);
+        mapper.map(_rs, _bean);
+        probe.mapped();
+        // uncommitted rows, skipped and lazily read LOBs are not cached
+        if (cache != null && mapper.isCacheable() && _conn.getAutoCommit())
+          cache.put(_metadata, cacheKey, _bean, _rs.getMetaData(), cacheVersion);
+        if (_trackChanges)
+          track(_bean);
+      }
 
       return result;
 
+    } catch (IllegalAccessException e) {
+      probe.fail(e);
+      throw new IllegalStateException(e);
+
+    } catch (SQLException | RuntimeException e) {
+      probe.fail(e);
+      throw e;
+
     } finally {
       cleanup();
+      probe.end("select", _entityName, result ? 1 : 0);
     }
   }
 
@@ -756,43 +1585,109 @@ public class DAOImpl implements DAO {
     return this;
   }
 
-  private void setParams(Object[] params) throws SQLException {
+  private void setParams(PreparedStatement ps, Object[] params) throws SQLException {
     if (params != null && params.length > 0) {
       int i = 0;
-      for (Object o : params) {
-        if (o instanceof Integer)
-          _ps.setObject(++i, (Integer) o, Types.INTEGER);
-        else if (o instanceof InputStream)
-          try {
-            _ps.setBinaryStream(++i, (InputStream) o, ((InputStream) o).available());
-          } catch (IOException e) {
-            e.printStackTrace();
-            throw new SQLException("Error setting BinaryStream value in PreparedStatement");
-          }
-        else if (o instanceof Timestamp)
-          _ps.setObject(++i, (Timestamp) o, Types.TIMESTAMP);
-        else
-          _ps.setObject(++i, o);
-      }
+      for (Object o : params)
+        setParam(ps, ++i, o, null);
     }
   }
 
+  // type is the bean property type, if known, so nulls can be typed; streams
+  // are read by the driver when the statement executes
+  private void setParam(PreparedStatement ps, int i, Object o, Class<?> type) throws SQLException {
+    if (o == null && type != null)
+      ps.setNull(i, SchemaUtil.getSqlType(type));
+    else if (o instanceof Integer)
+      ps.setObject(i, (Integer) o, Types.INTEGER);
+    else if (o instanceof InputStream)
+      ps.setBinaryStream(i, (InputStream) o);
+    else if (o instanceof Reader)
+      ps.setCharacterStream(i, (Reader) o);
+    else if (o instanceof Blob)
+      ps.setBlob(i, (Blob) o);
+    else if (o instanceof Clob)
+      ps.setClob(i, (Clob) o);
+    else if (o instanceof ByteBuffer)
+      ps.setBinaryStream(i, Lobs.stream((ByteBuffer) o), ((ByteBuffer) o).remaining());
+    else if (o instanceof FileChannel)
+      try {
+        FileChannel channel = (FileChannel) o;
+        ps.setBinaryStream(i, Lobs.stream(channel), channel.size() - channel.position());
+      } catch (IOException e) {
+        throw new SQLException("Error reading the size of a FileChannel parameter", e);
+      }
+    else if (o instanceof Path)
+      try {
+        long size = Files.size((Path) o);
+        InputStream in = Lobs.stream((Path) o);
+        if (_streams == null)
+          _streams = new ArrayList<>();
+        _streams.add(in);
+        ps.setBinaryStream(i, in, size);
+      } catch (IOException e) {
+        throw new SQLException("Error reading the size of file parameter " + o, e);
+      }
+    else if (o instanceof Timestamp)
+      ps.setObject(i, (Timestamp) o, Types.TIMESTAMP);
+    else
+      ps.setObject(i, o);
+  }
+
   @Override
   public final int update() throws SQLException {
-    connect();
-    String sql = createUpdateStmt();
+    Probe probe = begin();
+    String sql = null;
+    int result = 0;
     try {
-
-      _stmt = _conn.createStatement();
+      connect();
+      probe.connected();
+      BitSet filter = createFilter();
+      BitSet changes = _trackChanges ? findChanges(_bean, _metadata, filter) : null;
+      if (changes != null && changes.isEmpty()) {
+        // nothing to write, but a deleted row must not count as updated
+        SqlTemplate template = SqlTemplate.exists(_metadata, _dbVendor, filter);
+        if (_logger.isDebugEnabled())
+          _logger.debug("#update - no changes, " + template.sql);
+        _ps = prepare(template.sql);
+        probe.built();
+        probe.statement(template.sql, template.params.length);
+        result = exists(_ps, template, _bean) ? 1 : 0;
+        probe.executed();
+        return result;
+      }
+      BitSet columns = changes != null ? changes : createColumns(_bean, filter);
+      if (columns.isEmpty())
+        throw new RuntimeException("No values to update for " + _bean.toString());
+
+      SqlTemplate template = SqlTemplate.update(_metadata, _dbVendor, columns, filter);
+      sql = template.sql;
+      _ps = prepare(sql);
+      setParams(_ps, template, _bean);
       if (_logger.isDebugEnabled())
         _logger.debug("#update - " + sql);
-      return _stmt.executeUpdate(sql);
+      probe.built();
+      probe.statement(sql, template.params.length);
+      result = _ps.executeUpdate();
+      probe.executed();
+      if (_trackChanges && result == 1)
+        track(_bean);
+      return result;
     } catch (SQLException sqle) {
-      _logger.error(sql);
+      if (sql != null)
+        _logger.error(sql);
+      probe.fail(sqle);
       throw sqle;
+    } catch (RuntimeException e) {
+      probe.fail(e);
+      throw e;
     } finally {
+      // nothing written when no statement was prepared
+      if (sql != null)
+        invalidate(_bean);
       cleanup();
+      probe.end("update", _entityName, result);
     }
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.github.jlynx;
+
+/**
+ * Receives an event after each database operation of any DAO in the JVM, e.g.
+ * for metrics or tracing; see {@link DAOStatistics} and {@link SlowQueryLogger}.
+ * Listeners are registered with {@link #register(DAOListener)} or found with
+ * java.util.ServiceLoader (<code>META-INF/services/com.github.jlynx.DAOListener</code>).
+ * They are called on the thread of the operation and must be thread-safe and
+ * fast; exceptions are logged and ignored. Without listeners no timings are
+ * taken and no events are created.
+ *
+ * @since v2.4
+ */
+@FunctionalInterface
+public interface DAOListener {
+
+  /**
+   * @param event the completed, or failed, operation
+   */
+  void operationCompleted(DAOEvent event);
+
+  static void register(DAOListener listener) {
+    Probe.register(listener);
+  }
+
+  static void unregister(DAOListener listener) {
+    Probe.unregister(listener);
+  }
+
+}
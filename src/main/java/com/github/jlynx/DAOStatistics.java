@@ -0,0 +1,199 @@
+package com.github.jlynx;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates {@link DAOEvent}s per normalized SQL statement: counts, errors,
+ * rows, total and maximum time, and percentiles from a histogram with four
+ * buckets per power of two (within 25%). Events without SQL are aggregated
+ * per operation and table. At most 1000 statements are tracked, later ones are
+ * counted under <code>(other)</code>.
+ *
+ * <pre>
+ * DAOStatistics stats = new DAOStatistics();
+ * DAOListener.register(stats);
+ * for (DAOStatistics.Statement s : stats.getStatements())
+ *   System.out.println(s);
+ * </pre>
+ *
+ * @since v2.4
+ */
+public final class DAOStatistics implements DAOListener {
+
+  private final static int MAX_STATEMENTS = 1000;
+  private final static String OTHER = "(other)";
+  // 4 buckets below 4 microseconds, then 4 per power of two up to 2^62
+  private final static int BUCKETS = 248;
+
+  private final Map<String, Recorder> statements = new ConcurrentHashMap<>();
+
+  private static final class Recorder {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    private void record(DAOEvent event) {
+      long nanos = event.getTotalNanos();
+      count.increment();
+      if (event.getFailure() != null)
+        errors.increment();
+      rows.add(event.getRows());
+      totalNanos.add(nanos);
+      histogram.incrementAndGet(bucket(nanos / 1000));
+      for (long max = maxNanos.get(); nanos > max && !maxNanos.compareAndSet(max, nanos); max = maxNanos.get())
+        ;
+    }
+  }
+
+  /**
+   * Counters of one statement at the time of {@link #getStatements()}.
+   */
+  public static final class Statement {
+
+    private final String sql;
+    private final long count;
+    private final long errors;
+    private final long rows;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long[] histogram;
+
+    private Statement(String sql, Recorder recorder) {
+      this.sql = sql;
+      this.count = recorder.count.sum();
+      this.errors = recorder.errors.sum();
+      this.rows = recorder.rows.sum();
+      this.totalNanos = recorder.totalNanos.sum();
+      this.maxNanos = recorder.maxNanos.get();
+      this.histogram = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++)
+        histogram[i] = recorder.histogram.get(i);
+    }
+
+    /**
+     * @return normalized SQL, or operation and entity when no SQL was run
+     */
+    public String getSql() {
+      return sql;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public double getTotalMillis() {
+      return totalNanos / 1e6;
+    }
+
+    public double getMeanMillis() {
+      return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    public double getMaxMillis() {
+      return maxNanos / 1e6;
+    }
+
+    /**
+     * @param percentile e.g. 99 for the 99th percentile
+     * @return upper bound of the histogram bucket, at most the maximum
+     */
+    public double getPercentileMillis(double percentile) {
+      if (percentile < 0 || percentile > 100)
+        throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+      long total = 0;
+      for (long n : histogram)
+        total += n;
+      if (total == 0)
+        return 0;
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += histogram[i];
+        if (seen >= rank)
+          return Math.min(lowerBound(i + 1) / 1e3, getMaxMillis());
+      }
+      return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d x %s - mean %.3f ms, p50 %.3f, p95 %.3f, p99 %.3f, max %.3f, rows %d, errors %d",
+          count, sql, getMeanMillis(), getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99),
+          getMaxMillis(), rows, errors);
+    }
+  }
+
+  @Override
+  public void operationCompleted(DAOEvent event) {
+    String sql = event.getSql();
+    if (sql == null)
+      sql = event.getOperation() + (event.getEntity() == null ? "" : " " + event.getEntity());
+    Recorder recorder = statements.get(sql);
+    if (recorder == null)
+      recorder = statements.size() < MAX_STATEMENTS ? statements.computeIfAbsent(sql, k -> new Recorder())
+          : statements.computeIfAbsent(OTHER, k -> new Recorder());
+    recorder.record(event);
+  }
+
+  /**
+   * @return statements by total time, slowest first
+   */
+  public List<Statement> getStatements() {
+    List<Statement> list = new ArrayList<>();
+    for (Map.Entry<String, Recorder> entry : statements.entrySet())
+      list.add(new Statement(entry.getKey(), entry.getValue()));
+    list.sort(Comparator.comparingLong((Statement s) -> s.totalNanos).reversed());
+    return list;
+  }
+
+  /**
+   * @param sql statement, literals may differ from the recorded ones
+   * @return counters of the statement, or <code>null</code> when not seen
+   */
+  public Statement getStatement(String sql) {
+    String key = DAOEvent.normalize(sql);
+    Recorder recorder = statements.get(key);
+    return recorder == null ? null : new Statement(key, recorder);
+  }
+
+  public void reset() {
+    statements.clear();
+  }
+
+  // microseconds to histogram bucket
+  static int bucket(long micros) {
+    if (micros < 4)
+      return (int) Math.max(micros, 0);
+    int exp = 63 - Long.numberOfLeadingZeros(micros);
+    int sub = (int) (micros >>> (exp - 2)) & 3;
+    return (exp - 1) * 4 + sub;
+  }
+
+  // smallest value in microseconds of a bucket
+  static long lowerBound(int bucket) {
+    if (bucket < 4)
+      return bucket;
+    int exp = bucket / 4 + 1;
+    return (4L + bucket % 4) << (exp - 2);
+  }
+
+}
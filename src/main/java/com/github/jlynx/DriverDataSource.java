@@ -0,0 +1,94 @@
+package com.github.jlynx;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Unpooled DataSource for URL based connections, each call opens a new
+ * connection with <code>DriverManager</code>. One instance per URL and
+ * properties, so database metadata cached per connection source is shared.
+ *
+ * @since v2.4
+ */
+final class DriverDataSource implements DataSource {
+
+  private final static Map<String, DriverDataSource> instances = new ConcurrentHashMap<>();
+
+  private final String url;
+  private final Properties props;
+
+  private DriverDataSource(String url, Properties props) {
+    this.url = url;
+    this.props = props;
+  }
+
+  static DriverDataSource of(String databaseUrl, Properties connectionParams) {
+    if (databaseUrl == null || databaseUrl.length() < 2)
+      throw new IllegalArgumentException("Connection not valid");
+    String key = databaseUrl + "|"
+        + (connectionParams == null || connectionParams.isEmpty() ? "" : new TreeMap<>(connectionParams).toString());
+    return instances.computeIfAbsent(key, k -> new DriverDataSource(databaseUrl, connectionParams));
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return DriverManager.getConnection(url, props);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return DriverManager.getConnection(url, username, password);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return null;
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return 0;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this))
+      return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  @Override
+  public String toString() {
+    return "DriverDataSource[" + SchemaUtil.sanitizeUrl(url) + "]";
+  }
+}
@@ -0,0 +1,276 @@
+package com.github.jlynx;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Second-level cache of rows read by {@link DAO#select()}, one per
+ * {@link Cached} class, keyed by primary key value. A hit copies the cached
+ * column values into the caller's bean without a database round trip; the
+ * least recently used row is evicted when the cache is full.
+ * <p>
+ * Rows are invalidated when this JVM writes the entity through jLynx (insert,
+ * update, delete, save and their bulk variants); {@link DAO#executeSql} clears
+ * all caches. Changes made by other processes, or committed by a transaction
+ * the caller manages, are only seen after the TTL expires. Date and array
+ * values are copied on put and on each hit; other mutable values are shared
+ * and must not be changed in place.
+ *
+ * @since v2.4
+ */
+public final class EntityCache {
+
+  private final static Map<Class<?>, EntityCache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Counters since the cache was created.
+   */
+  public static final class Statistics {
+
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+
+    private Statistics(int size, long hits, long misses, long evictions, long invalidations) {
+      this.size = size;
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.invalidations = invalidations;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return rows removed because the cache was full or the TTL expired
+     */
+    public long getEvictions() {
+      return evictions;
+    }
+
+    /**
+     * @return rows removed because the entity was written
+     */
+    public long getInvalidations() {
+      return invalidations;
+    }
+
+    /**
+     * @return hits / (hits + misses), 0 before the first lookup
+     */
+    public double getHitRatio() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+      return "EntityCache.Statistics[size=" + size + ", hits=" + hits + ", misses=" + misses + ", evictions="
+          + evictions + ", invalidations=" + invalidations + "]";
+    }
+  }
+
+  private static final class Entry {
+
+    private final BitSet columns;
+    private final Object[] values;
+    private final long expires;
+
+    private Entry(BitSet columns, Object[] values, long expires) {
+      this.columns = columns;
+      this.values = values;
+      this.expires = expires;
+    }
+  }
+
+  private final Class<?> type;
+  private final int maxSize;
+  private final long ttlNanos;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  // incremented by every write, a row read before a write is not cached
+  private final AtomicLong version = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  private EntityCache(Class<?> type, Cached cached) {
+    if (cached.maxSize() < 1 || cached.ttlSeconds() < 0)
+      throw new IllegalArgumentException("Invalid @Cached settings for " + type.getName());
+    this.type = type;
+    this.maxSize = cached.maxSize();
+    this.ttlNanos = cached.ttlSeconds() * 1000000000L;
+  }
+
+  /**
+   * @return the cache of a {@link Cached} class, or <code>null</code> when the
+   *         class is not cached
+   */
+  public static EntityCache of(Class<?> entityClass) {
+    return EntityMetadata.of(entityClass).getCache();
+  }
+
+  // called once per class by EntityMetadata
+  static EntityCache create(Class<?> type) {
+    Cached cached = type.getAnnotation(Cached.class);
+    if (cached == null)
+      return null;
+    return caches.computeIfAbsent(type, t -> new EntityCache(t, cached));
+  }
+
+  /**
+   * Empties the caches of all classes, e.g. after changes made outside jLynx.
+   */
+  public static void clearAll() {
+    for (EntityCache cache : caches.values())
+      cache.clear();
+  }
+
+  /**
+   * Removes all rows of this class.
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      version.incrementAndGet();
+      invalidations.add(entries.size());
+      entries.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public Statistics getStatistics() {
+    int size;
+    lock.lock();
+    try {
+      size = entries.size();
+    } finally {
+      lock.unlock();
+    }
+    return new Statistics(size, hits.sum(), misses.sum(), evictions.sum(), invalidations.sum());
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * @param keys primary key properties, values must be set
+   * @return the key value, or a list of values for a composite key
+   */
+  static Object key(EntityMetadata metadata, BitSet keys, Object bean) throws IllegalAccessException {
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    if (keys.cardinality() == 1)
+      return properties[keys.nextSetBit(0)].get(bean);
+    List<Object> values = new ArrayList<>(keys.cardinality());
+    for (int i = keys.nextSetBit(0); i >= 0; i = keys.nextSetBit(i + 1))
+      values.add(properties[i].get(bean));
+    return values;
+  }
+
+  long version() {
+    return version.get();
+  }
+
+  /**
+   * Copies a cached row into the bean.
+   *
+   * @return false when the row is not cached or expired
+   */
+  boolean load(EntityMetadata metadata, Object key, Object bean) throws IllegalAccessException {
+    Entry entry;
+    lock.lock();
+    try {
+      entry = entries.get(key);
+      if (entry != null && entry.expires != 0 && entry.expires - System.nanoTime() < 0) {
+        entries.remove(key);
+        evictions.increment();
+        entry = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (entry == null) {
+      misses.increment();
+      return false;
+    }
+    hits.increment();
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    for (int i = entry.columns.nextSetBit(0); i >= 0; i = entry.columns.nextSetBit(i + 1))
+      properties[i].set(bean, BeanUtil.copyValue(entry.values[i]));
+    return true;
+  }
+
+  /**
+   * Caches the properties set from a query result, unless the entity was written
+   * after <code>version</code> was read.
+   */
+  void put(EntityMetadata metadata, Object key, Object bean, ResultSetMetaData rsmd, long version)
+      throws SQLException, IllegalAccessException {
+
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    BitSet columns = new BitSet(properties.length);
+    for (int colIndex = 1; colIndex <= rsmd.getColumnCount(); colIndex++) {
+      EntityMetadata.Property property = metadata.getProperty(rsmd.getColumnLabel(colIndex));
+      if (property != null)
+        columns.set(property.index);
+    }
+    Object[] values = new Object[properties.length];
+    for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1))
+      values[i] = BeanUtil.copyValue(properties[i].get(bean));
+    Entry entry = new Entry(columns, values, ttlNanos == 0 ? 0 : (System.nanoTime() + ttlNanos) | 1);
+
+    lock.lock();
+    try {
+      if (this.version.get() != version)
+        return;
+      entries.put(key, entry);
+      if (entries.size() > maxSize) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        eldest.next();
+        eldest.remove();
+        evictions.increment();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void remove(Object key) {
+    lock.lock();
+    try {
+      version.incrementAndGet();
+      if (entries.remove(key) != null)
+        invalidations.increment();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+package com.github.jlynx;
+
+/**
+ * Reflection-free accessors for a @Table class, generated at compile time by
+ * the jLynx annotation processor as <code>&lt;class name&gt;_JLynxMapper</code>
+ * in the package of the entity. When present on the classpath it is used
+ * instead of reflection; properties are indexed in the order returned by
+ * {@link #properties()}.
+ *
+ * @param <T> entity class
+ * @since v2.4
+ */
+public interface EntityMapper<T> {
+
+  /**
+   * Suffix appended to the binary class name of an entity to find its mapper.
+   */
+  String SUFFIX = "_JLynxMapper";
+
+  /**
+   * @return the entity class
+   */
+  Class<T> type();
+
+  /**
+   * @return field names, subclass fields first
+   */
+  String[] properties();
+
+  /**
+   * @return database column of each property, from @Column or the upper cased
+   *         field name
+   */
+  String[] columns();
+
+  /**
+   * @return declared type of each property
+   */
+  Class<?>[] types();
+
+  /**
+   * @return columns of the properties annotated with {@link Id}, empty when the
+   *         primary key is read from database metadata
+   */
+  String[] keys();
+
+  /**
+   * @return a new instance, using the no-arg constructor
+   */
+  T newInstance();
+
+  /**
+   * @param bean  entity
+   * @param index property index
+   * @return property value
+   */
+  Object get(T bean, int index);
+
+  /**
+   * @param bean  entity
+   * @param index property index
+   * @param value new value
+   * @throws ClassCastException value is not of the property type
+   */
+  void set(T bean, int index, Object value);
+
+}
@@ -0,0 +1,274 @@
+package com.github.jlynx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable, per-class mapping between bean fields and database columns. Built
+ * once per class from {@link BeanUtil#getFields(Class)} and the
+ * {@link Table}/{@link Column}/{@link Id} annotations; lookups by property or
+ * column name are case-insensitive hash lookups instead of field scans. A
+ * generated {@link EntityMapper} is used in place of reflection when one is
+ * found.
+ */
+final class EntityMetadata {
+
+  private final static Map<Class<?>, EntityMetadata> cache = new ConcurrentHashMap<>();
+
+  private final Class<?> type;
+  private final String table;
+  private final Property[] properties;
+  private final Map<String, Property> lookup;
+  private final Set<String> keys;
+  private final EntityMapper<Object> mapper;
+  private final EntityCache entityCache;
+  private final Map<String, RowMapper> rowMappers = new ConcurrentHashMap<>();
+
+  private EntityMetadata(Class<?> type) {
+
+    this.type = type;
+    this.table = type.isAnnotationPresent(Table.class) ? type.getAnnotation(Table.class).value() : null;
+    this.mapper = findMapper(type);
+    this.entityCache = table == null ? null : EntityCache.create(type);
+
+    if (mapper != null) {
+      String[] names = mapper.properties();
+      String[] columns = mapper.columns();
+      Class<?>[] types = mapper.types();
+      this.properties = new Property[names.length];
+      Map<String, Property> map = new HashMap<>();
+      for (int j = 0; j < names.length; j++) {
+        properties[j] = new Property(j, names[j], columns[j], types[j], mapper);
+        map.putIfAbsent(properties[j].upperName, properties[j]);
+        map.putIfAbsent(properties[j].column.toUpperCase(), properties[j]);
+      }
+      this.lookup = Collections.unmodifiableMap(map);
+      this.keys = keys(mapper.keys());
+      return;
+    }
+
+    Field[] fields = BeanUtil.getFields(type);
+    Property[] props = new Property[fields.length];
+    Map<String, Property> map = new HashMap<>();
+    Set<String> ids = new LinkedHashSet<>();
+
+    int j = 0;
+    for (Field field : fields) {
+      if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+        continue;
+      Property property = new Property(j, field);
+      if (field.isAnnotationPresent(Id.class))
+        ids.add(property.column);
+      props[j++] = property;
+      // first match wins, property name or column name (see BeanUtil#getFieldIgnoreCase)
+      map.putIfAbsent(property.upperName, property);
+      map.putIfAbsent(property.column.toUpperCase(), property);
+    }
+
+    Property[] trimmed = new Property[j];
+    System.arraycopy(props, 0, trimmed, 0, j);
+    this.properties = trimmed;
+    this.lookup = Collections.unmodifiableMap(map);
+    this.keys = keys(ids.toArray(new String[0]));
+  }
+
+  private static Set<String> keys(String[] columns) {
+    if (columns == null || columns.length == 0)
+      return null;
+    Set<String> set = new LinkedHashSet<>();
+    Collections.addAll(set, columns);
+    return Collections.unmodifiableSet(set);
+  }
+
+  // generated by the annotation processor, see EntityMapper
+  @SuppressWarnings("unchecked")
+  private static EntityMapper<Object> findMapper(Class<?> type) {
+    try {
+      Class<?> mapperClass = Class.forName(type.getName() + EntityMapper.SUFFIX, true, type.getClassLoader());
+      if (EntityMapper.class.isAssignableFrom(mapperClass))
+        return (EntityMapper<Object>) mapperClass.getConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      // use reflection
+    } catch (ReflectiveOperationException | LinkageError e) {
+      LoggerFactory.getLogger("jlynx").warn(type.getName() + EntityMapper.SUFFIX + " not used - " + e);
+    }
+    return null;
+  }
+
+  static EntityMetadata of(Class<?> type) {
+    EntityMetadata metadata = cache.get(type);
+    if (metadata == null)
+      metadata = cache.computeIfAbsent(type, EntityMetadata::new);
+    return metadata;
+  }
+
+  Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * @return value of the Table annotation, or <code>null</code> if missing
+   */
+  String getTable() {
+    return table;
+  }
+
+  /**
+   * @return primary key columns declared with {@link Id}, or <code>null</code>
+   *         when the database must be asked
+   */
+  Set<String> getKeys() {
+    return keys;
+  }
+
+  /**
+   * @return second-level cache of a {@link Cached} class, or <code>null</code>
+   */
+  EntityCache getCache() {
+    return entityCache;
+  }
+
+  /**
+   * @return generated mapper, or <code>null</code> when reflection is used
+   */
+  EntityMapper<Object> getMapper() {
+    return mapper;
+  }
+
+  Property[] getProperties() {
+    return properties;
+  }
+
+  /**
+   * Case-insensitive lookup by property or column name.
+   *
+   * @return the property, or <code>null</code> when not mapped
+   */
+  Property getProperty(String propertyOrColumn) {
+    return lookup.get(propertyOrColumn.toUpperCase());
+  }
+
+  /**
+   * Database column for a property or column name; unmapped names are upper
+   * cased.
+   */
+  String getColumn(String propertyOrColumn) {
+    Property property = getProperty(propertyOrColumn);
+    return property == null ? propertyOrColumn.toUpperCase() : property.column;
+  }
+
+  RowMapper getRowMapper(String signature) {
+    return rowMappers.get(signature);
+  }
+
+  RowMapper putRowMapper(String signature, RowMapper mapper) {
+    RowMapper existing = rowMappers.putIfAbsent(signature, mapper);
+    return existing == null ? mapper : existing;
+  }
+
+  /**
+   * A single persistent field, with pre-resolved accessors.
+   */
+  static final class Property {
+
+    private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private final static MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private final static MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    final int index;
+    final Field field;
+    final String name;
+    final String upperName;
+    final String column;
+    final Class<?> type;
+
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final EntityMapper<Object> mapper;
+
+    private Property(int index, Field field) {
+      this.index = index;
+      this.field = field;
+      this.name = field.getName();
+      this.upperName = name.toUpperCase();
+      this.column = field.isAnnotationPresent(Column.class) ? field.getAnnotation(Column.class).value() : upperName;
+      this.type = field.getType();
+      this.getter = handle(field, true);
+      this.setter = handle(field, false);
+      this.mapper = null;
+    }
+
+    private Property(int index, String name, String column, Class<?> type, EntityMapper<Object> mapper) {
+      this.index = index;
+      this.field = null;
+      this.name = name;
+      this.upperName = name.toUpperCase();
+      this.column = column;
+      this.type = type;
+      this.getter = null;
+      this.setter = null;
+      this.mapper = mapper;
+    }
+
+    private static MethodHandle handle(Field field, boolean getter) {
+      try {
+        return getter ? LOOKUP.unreflectGetter(field).asType(GETTER) : LOOKUP.unreflectSetter(field).asType(SETTER);
+      } catch (IllegalAccessException e) {
+        // e.g. final fields, fall back to java.lang.reflect.Field
+        return null;
+      }
+    }
+
+    Object get(Object bean) throws IllegalAccessException {
+      if (mapper != null)
+        return mapper.get(bean, index);
+      if (getter == null)
+        return field.get(bean);
+      try {
+        return getter.invokeExact(bean);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    void set(Object bean, Object value) throws IllegalAccessException {
+      if (mapper != null) {
+        try {
+          mapper.set(bean, index, value);
+        } catch (ClassCastException | NullPointerException e) {
+          throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return;
+      }
+      if (setter == null) {
+        field.set(bean, value);
+        return;
+      }
+      try {
+        setter.invokeExact(bean, value);
+      } catch (ClassCastException | NullPointerException e) {
+        // same contract as Field#set, e.g. null for a primitive
+        throw new IllegalArgumentException(e.getMessage(), e);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,161 @@
+package com.github.jlynx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of one DAO operation, driven by its {@link Probe}:
+ * <code>jlynx.Operation</code> spans the whole operation,
+ * <code>jlynx.Connect</code> the connection acquisition and
+ * <code>jlynx.ResultMapping</code> the mapping of rows to beans. Probes only
+ * create events while a recording is running; the events are enabled, and
+ * thresholds set, in the recording settings, e.g.
+ * <code>jlynx.Operation#threshold=10 ms</code>. Loaded only when the JVM has
+ * the jdk.jfr module (Java 11, Java 8u262 and higher).
+ */
+final class FlightEvents {
+
+  @Name("jlynx.Operation")
+  @Label("jLynx Operation")
+  @Category("jLynx")
+  @Description("DAO operation, from connection acquisition to the last mapped row")
+  static final class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Table")
+    String table;
+
+    @Label("SQL Digest")
+    @Description("Statement with literals replaced by ?")
+    String sql;
+
+    @Label("Bind Count")
+    int binds;
+
+    @Label("Rows")
+    @Description("Rows returned or affected")
+    long rows;
+
+    @Label("Failure")
+    String failure;
+  }
+
+  @Name("jlynx.Connect")
+  @Label("jLynx Connect")
+  @Category("jLynx")
+  @Description("Connection acquisition of a DAO operation")
+  @StackTrace(false)
+  static final class ConnectEvent extends Event {
+
+    @Label("Table")
+    String table;
+  }
+
+  @Name("jlynx.ResultMapping")
+  @Label("jLynx Result Mapping")
+  @Category("jLynx")
+  @Description("Mapping of result rows to beans")
+  @StackTrace(false)
+  static final class MappingEvent extends Event {
+
+    @Label("Table")
+    String table;
+
+    @Label("Rows")
+    long rows;
+  }
+
+  private OperationEvent operation;
+  private ConnectEvent connect;
+  private MappingEvent mapping;
+  private boolean connected;
+  private boolean mapped;
+
+  // tells Probe whether a recording is running
+  static void install() {
+    FlightRecorder.addListener(new FlightRecorderListener() {
+      @Override
+      public void recordingStateChanged(Recording recording) {
+        Probe.recording = isRecording();
+      }
+    });
+    // recordings started before, e.g. with -XX:StartFlightRecording
+    if (FlightRecorder.isInitialized())
+      Probe.recording = isRecording();
+  }
+
+  private static boolean isRecording() {
+    for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings())
+      if (recording.getState() == RecordingState.RUNNING)
+        return true;
+    return false;
+  }
+
+  void start() {
+    operation = new OperationEvent();
+    operation.begin();
+    connect = new ConnectEvent();
+    connect.begin();
+    mapping = null;
+    connected = mapped = false;
+  }
+
+  void connected() {
+    if (connect != null && !connected) {
+      connect.end();
+      connected = true;
+    }
+  }
+
+  void executed() {
+    if (mapping == null)
+      mapping = new MappingEvent();
+    mapping.begin();
+  }
+
+  void mapped() {
+    if (mapping != null) {
+      mapping.end();
+      mapped = true;
+    }
+  }
+
+  void end(String operation, String table, String sql, int binds, long rows, Throwable failure) {
+    ConnectEvent connect = this.connect;
+    if (connected && connect.shouldCommit()) {
+      connect.table = table;
+      connect.commit();
+    }
+    MappingEvent mapping = this.mapping;
+    if (mapped && mapping.shouldCommit()) {
+      mapping.table = table;
+      mapping.rows = rows;
+      mapping.commit();
+    }
+    OperationEvent event = this.operation;
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.table = table;
+      event.sql = sql == null ? null : DAOEvent.normalize(sql);
+      event.binds = binds;
+      event.rows = rows;
+      event.failure = failure == null ? null : failure.toString();
+      event.commit();
+    }
+    this.operation = null;
+    this.connect = null;
+    this.mapping = null;
+  }
+
+}
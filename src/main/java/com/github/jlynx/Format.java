@@ -0,0 +1,20 @@
+package com.github.jlynx;
+
+/**
+ * Text formats for importing and exporting rows.
+ *
+ * @since v2.4
+ */
+public enum Format {
+
+  /**
+   * Comma separated values (RFC 4180), a header line holds the column names.
+   */
+  CSV,
+
+  /**
+   * Newline delimited JSON, one object per line keyed by column name.
+   */
+  JSON_LINES
+
+}
@@ -0,0 +1,18 @@
+package com.github.jlynx;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a primary key field; when present on any field of a @Table class the
+ * database is not queried for the primary key. Annotate each field of a
+ * composite key.
+ *
+ * @since v2.4
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Id {
+}
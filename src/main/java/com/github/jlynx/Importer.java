@@ -0,0 +1,560 @@
+package com.github.jlynx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads a CSV or JSON Lines file into a @Table class. The file is read through
+ * a buffered channel one row at a time and written with
+ * {@link DAO#insertAll(java.util.Collection, int)}, so memory use depends on the
+ * batch size, not the file size. Columns are matched to properties by name or
+ * {@link Column} value (case-insensitive); values are converted by parsers
+ * resolved once per property.
+ *
+ * <pre>
+ * long rows = Importer.of(dao, Person.class, Format.CSV).batchSize(5000)
+ *     .progress((count, rate) -&gt; log.info(count + " rows, " + rate + " rows/s")).run(file);
+ * </pre>
+ *
+ * Not thread-safe.
+ *
+ * @param <T> entity class
+ * @since v2.4
+ */
+public final class Importer<T> {
+
+  /**
+   * Called after each batch is written and once at the end.
+   */
+  @FunctionalInterface
+  public interface Progress {
+
+    /**
+     * @param rows          rows imported so far
+     * @param rowsPerSecond average rate since the import started
+     */
+    void update(long rows, double rowsPerSecond);
+  }
+
+  private final static int BUFFER_SIZE = 64 * 1024;
+
+  private final DAO dao;
+  private final Class<T> entityClass;
+  private final Format format;
+  private final EntityMetadata metadata;
+
+  private int batchSize = 1000;
+  private Charset charset = StandardCharsets.UTF_8;
+  private char delimiter = ',';
+  private String[] columns;
+  private Progress progress;
+
+  // JSON keys vary per line, resolved columns are remembered by name
+  private final Map<String, Target> resolved = new HashMap<>();
+
+  private Importer(DAO dao, Class<T> entityClass, Format format) {
+    this.dao = dao;
+    this.entityClass = entityClass;
+    this.format = format;
+    this.metadata = EntityMetadata.of(entityClass);
+  }
+
+  /**
+   * @param dao         DAO used to insert the rows
+   * @param entityClass class annotated with {@link Table}
+   * @param format      file format
+   * @param <T>         entity class
+   * @return Importer
+   */
+  public static <T> Importer<T> of(DAO dao, Class<T> entityClass, Format format) {
+    if (EntityMetadata.of(entityClass).getTable() == null)
+      throw new IllegalArgumentException(Table.class.getName() + " annotation missing from " + entityClass.getName());
+    return new Importer<>(dao, entityClass, format);
+  }
+
+  /**
+   * @param rows rows per insert batch, default 1000
+   * @return Importer
+   */
+  public Importer<T> batchSize(int rows) {
+    if (rows < 1)
+      throw new IllegalArgumentException("batchSize must be positive: " + rows);
+    batchSize = rows;
+    return this;
+  }
+
+  /**
+   * @param charset file encoding, default UTF-8
+   * @return Importer
+   */
+  public Importer<T> charset(Charset charset) {
+    this.charset = charset;
+    return this;
+  }
+
+  /**
+   * @param delimiter CSV field separator, default <code>','</code>
+   * @return Importer
+   */
+  public Importer<T> delimiter(char delimiter) {
+    this.delimiter = delimiter;
+    return this;
+  }
+
+  /**
+   * Column names for a CSV file without a header line.
+   *
+   * @param columns column or property names, in file order
+   * @return Importer
+   */
+  public Importer<T> columns(String... columns) {
+    this.columns = columns.clone();
+    return this;
+  }
+
+  /**
+   * @param progress callback after each batch
+   * @return Importer
+   */
+  public Importer<T> progress(Progress progress) {
+    this.progress = progress;
+    return this;
+  }
+
+  /**
+   * Imports all rows of a file.
+   *
+   * @param file CSV or JSON Lines file
+   * @return number of rows inserted
+   * @throws IOException              file could not be read
+   * @throws SQLException             database exception, rows of earlier
+   *                                  batches remain inserted
+   * @throws IllegalArgumentException a value could not be converted, the
+   *                                  message names line and column
+   */
+  public long run(Path file) throws IOException, SQLException {
+
+    final long start = System.nanoTime();
+    long rows = 0;
+    List<T> batch = new ArrayList<>(batchSize);
+    Constructor<T> constructor;
+    try {
+      constructor = entityClass.getConstructor();
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(entityClass.getName() + " needs a public no-arg constructor", e);
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        Reader reader = Channels.newReader(channel, charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT), BUFFER_SIZE)) {
+
+      RecordReader records = format == Format.CSV ? new CsvReader(reader, delimiter) : new JsonReader(reader);
+      Target[] mapping = null;
+      if (format == Format.CSV)
+        mapping = map(columns != null ? columns : records.next() ? records.names() : new String[0]);
+
+      while (records.next()) {
+        if (records.isBlank())
+          continue;
+        batch.add(toBean(constructor.newInstance(), records, mapping));
+        if (batch.size() == batchSize) {
+          rows += dao.insertAll(batch, batchSize);
+          batch.clear();
+          report(rows, start);
+        }
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Could not create " + entityClass.getName(), e);
+    }
+
+    if (!batch.isEmpty())
+      rows += dao.insertAll(batch, batchSize);
+    report(rows, start);
+    return rows;
+  }
+
+  private void report(long rows, long start) {
+    if (progress != null) {
+      double seconds = (System.nanoTime() - start) / 1e9;
+      progress.update(rows, seconds > 0 ? rows / seconds : 0);
+    }
+  }
+
+  private T toBean(T bean, RecordReader records, Target[] mapping) {
+    if (mapping == null) {
+      for (int i = 0; i < records.size(); i++)
+        set(bean, column(records.name(i)), records.value(i), records.line());
+    } else
+      for (int i = 0; i < records.size() && i < mapping.length; i++)
+        set(bean, mapping[i], records.value(i), records.line());
+    return bean;
+  }
+
+  private void set(T bean, Target column, String value, long line) {
+    if (column == null || value == null || value.isEmpty() && column.property.type != String.class)
+      return;
+    try {
+      BeanUtil.setValue(column.property, bean, column.parser.parse(value));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("line " + line + ", column " + column.property.column + ": " + e, e);
+    }
+  }
+
+  private Target[] map(String[] names) {
+    Target[] mapping = new Target[names.length];
+    for (int i = 0; i < names.length; i++)
+      mapping[i] = column(names[i]);
+    return mapping;
+  }
+
+  private Target column(String name) {
+    if (resolved.containsKey(name))
+      return resolved.get(name);
+
+    Target column = null;
+    EntityMetadata.Property property = metadata.getProperty(name.trim());
+    if (property == null)
+      LoggerFactory.getLogger("jlynx").warn(entityClass.getSimpleName() + "#" + name + " - no property exists");
+    else {
+      ValueParsers.Parser parser = ValueParsers.of(property.type);
+      if (parser == null)
+        LoggerFactory.getLogger("jlynx").warn(entityClass.getSimpleName() + "#" + property.name
+            + " - no conversion from String to " + property.type.getName());
+      else
+        column = new Target(property, parser);
+    }
+    resolved.put(name, column);
+    return column;
+  }
+
+  private static final class Target {
+
+    private final EntityMetadata.Property property;
+    private final ValueParsers.Parser parser;
+
+    private Target(EntityMetadata.Property property, ValueParsers.Parser parser) {
+      this.property = property;
+      this.parser = parser;
+    }
+  }
+
+  /**
+   * Character source over a Reader with its own buffer and one character of
+   * look-ahead.
+   */
+  private static abstract class RecordReader {
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE / 2];
+    private int pos;
+    private int limit;
+    private long line = 1;
+    private long recordLine;
+    private boolean started;
+
+    final StringBuilder text = new StringBuilder(256);
+    final List<String> values = new ArrayList<>();
+
+    RecordReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    final int read() throws IOException {
+      if (pos == limit && !fill())
+        return -1;
+      char c = buffer[pos++];
+      if (c == '\n')
+        line++;
+      return c;
+    }
+
+    final int peek() throws IOException {
+      if (pos == limit && !fill())
+        return -1;
+      return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+      int n;
+      do
+        n = reader.read(buffer, 0, buffer.length);
+      while (n == 0);
+      pos = 0;
+      limit = Math.max(n, 0);
+      if (!started && n > 0) {
+        started = true;
+        // byte order mark
+        if (buffer[0] == '\uFEFF' && ++pos == limit)
+          return fill();
+      }
+      return pos < limit;
+    }
+
+    // line the current record started on
+    final long line() {
+      return recordLine;
+    }
+
+    final void begin() {
+      recordLine = line;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at end of file
+     */
+    abstract boolean next() throws IOException;
+
+    boolean isBlank() {
+      return values.isEmpty() || values.size() == 1 && values.get(0) == null;
+    }
+
+    final int size() {
+      return values.size();
+    }
+
+    final String value(int i) {
+      return values.get(i);
+    }
+
+    String name(int i) {
+      throw new UnsupportedOperationException();
+    }
+
+    final String[] names() {
+      String[] names = new String[values.size()];
+      for (int i = 0; i < names.length; i++)
+        names[i] = values.get(i) == null ? "" : values.get(i);
+      return names;
+    }
+
+    final IllegalArgumentException error(String message) {
+      return new IllegalArgumentException("line " + recordLine + ": " + message);
+    }
+  }
+
+  /**
+   * RFC 4180 CSV; quoted fields may contain delimiters, quotes ("") and line
+   * breaks. Empty unquoted fields are read as null.
+   */
+  private static final class CsvReader extends RecordReader {
+
+    private final char delimiter;
+
+    CsvReader(Reader reader, char delimiter) {
+      super(reader);
+      this.delimiter = delimiter;
+    }
+
+    @Override
+    boolean next() throws IOException {
+
+      values.clear();
+      begin();
+      int c = read();
+      if (c == -1)
+        return false;
+
+      while (true) {
+        text.setLength(0);
+        boolean quoted = c == '"';
+        if (quoted) {
+          while (true) {
+            c = read();
+            if (c == -1)
+              throw error("unterminated quoted field");
+            if (c == '"') {
+              c = read();
+              if (c != '"')
+                break;
+            }
+            text.append((char) c);
+          }
+        }
+        while (c != delimiter && c != '\n' && c != '\r' && c != -1) {
+          text.append((char) c);
+          c = read();
+        }
+        values.add(quoted || text.length() > 0 ? text.toString() : null);
+
+        if (c == delimiter) {
+          c = read();
+          continue;
+        }
+        if (c == '\r' && peek() == '\n')
+          read();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * One flat JSON object per line; nested objects and arrays are kept as JSON
+   * text.
+   */
+  private static final class JsonReader extends RecordReader {
+
+    private final List<String> keys = new ArrayList<>();
+
+    JsonReader(Reader reader) {
+      super(reader);
+    }
+
+    @Override
+    boolean next() throws IOException {
+
+      values.clear();
+      keys.clear();
+      begin();
+      int c = skipSpace(read());
+      if (c == -1)
+        return false;
+      if (c == '\n')
+        return true;
+      if (c != '{')
+        throw error("JSON object expected");
+
+      c = skipSpace(read());
+      while (c != '}') {
+        if (c != '"')
+          throw error("JSON key expected");
+        keys.add(readString());
+        if (skipSpace(read()) != ':')
+          throw error("':' expected");
+        values.add(readValue(skipSpace(read())));
+        c = skipSpace(read());
+        if (c == ',')
+          c = skipSpace(read());
+        else if (c != '}')
+          throw error("',' or '}' expected");
+      }
+
+      c = skipSpace(read());
+      if (c != '\n' && c != -1)
+        throw error("one JSON object per line expected");
+      return true;
+    }
+
+    @Override
+    boolean isBlank() {
+      return keys.isEmpty();
+    }
+
+    @Override
+    String name(int i) {
+      return keys.get(i);
+    }
+
+    private int skipSpace(int c) throws IOException {
+      while (c == ' ' || c == '\t' || c == '\r')
+        c = read();
+      return c;
+    }
+
+    // pre-condition: opening quote read
+    private String readString() throws IOException {
+      text.setLength(0);
+      appendString();
+      return text.toString();
+    }
+
+    private void appendString() throws IOException {
+      while (true) {
+        int c = read();
+        if (c == -1 || c == '\n')
+          throw error("unterminated string");
+        if (c == '"')
+          return;
+        if (c == '\\') {
+          c = read();
+          switch (c) {
+            case 'b':
+              c = '\b';
+              break;
+            case 'f':
+              c = '\f';
+              break;
+            case 'n':
+              c = '\n';
+              break;
+            case 'r':
+              c = '\r';
+              break;
+            case 't':
+              c = '\t';
+              break;
+            case 'u':
+              int code = 0;
+              for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0)
+                  throw error("invalid unicode escape");
+                code = code * 16 + digit;
+              }
+              c = code;
+              break;
+            case -1:
+              throw error("unterminated string");
+            default:
+          }
+        }
+        text.append((char) c);
+      }
+    }
+
+    // value text; strings are unescaped, numbers and booleans kept as written
+    private String readValue(int c) throws IOException {
+      if (c == '"')
+        return readString();
+      text.setLength(0);
+      if (c == '{' || c == '[') {
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+          if (c == -1 || c == '\n')
+            throw error("unterminated object or array");
+          text.append((char) c);
+          if (inString) {
+            if (escaped)
+              escaped = false;
+            else if (c == '\\')
+              escaped = true;
+            else if (c == '"')
+              inString = false;
+          } else if (c == '"')
+            inString = true;
+          else if (c == '{' || c == '[')
+            depth++;
+          else if ((c == '}' || c == ']') && --depth == 0)
+            return text.toString();
+          c = read();
+        }
+      }
+      if (c == ',' || c == '}' || c == '\n' || c == -1)
+        throw error("value expected");
+      text.append((char) c);
+      for (int p = peek(); p != ',' && p != '}' && p > ' '; p = peek())
+        text.append((char) read());
+      String literal = text.toString();
+      return "null".equals(literal) ? null : literal;
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+package com.github.jlynx;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.Types;
+
+/**
+ * LOB helpers for mapping and binding: which columns are large objects, which
+ * property types read them lazily, and streams over values of known length
+ * that are read by the driver while the statement executes.
+ */
+final class Lobs {
+
+  private Lobs() {
+  }
+
+  /**
+   * @return column types whose values may be large, skipped by
+   *         {@link DAO#skipLobs(boolean)}
+   */
+  static boolean isLob(int sqlType) {
+    switch (sqlType) {
+      case Types.BLOB:
+      case Types.CLOB:
+      case Types.NCLOB:
+      case Types.LONGVARBINARY:
+      case Types.LONGVARCHAR:
+      case Types.LONGNVARCHAR:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return property types mapped to a locator or stream instead of the value
+   */
+  static boolean isHandle(Class<?> type) {
+    return type == Blob.class || type == Clob.class || type == NClob.class || type == InputStream.class
+        || type == Reader.class;
+  }
+
+  /**
+   * @return Blob, Clob and NClob, mapped although they are interfaces
+   */
+  static boolean isLocator(Class<?> type) {
+    return type == Blob.class || type == Clob.class || type == NClob.class;
+  }
+
+  /**
+   * @return the remaining bytes of a buffer, the buffer's position is not
+   *         changed
+   */
+  static InputStream stream(ByteBuffer buffer) {
+    ByteBuffer bytes = buffer.duplicate();
+    return new InputStream() {
+
+      @Override
+      public int read() {
+        return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0)
+          return 0;
+        if (!bytes.hasRemaining())
+          return -1;
+        int n = Math.min(len, bytes.remaining());
+        bytes.get(b, off, n);
+        return n;
+      }
+
+      @Override
+      public int available() {
+        return bytes.remaining();
+      }
+    };
+  }
+
+  /**
+   * @return the bytes from the channel's position, the channel is not closed
+   */
+  static InputStream stream(FileChannel channel) {
+    return new FilterInputStream(Channels.newInputStream(channel)) {
+
+      @Override
+      public void close() {
+        // owned by the caller
+      }
+    };
+  }
+
+  /**
+   * @return the file's bytes; the file is opened on the first read and must be
+   *         closed by the caller
+   */
+  static InputStream stream(Path path) {
+    return new InputStream() {
+
+      private InputStream in;
+
+      private InputStream open() throws IOException {
+        if (in == null)
+          in = Files.newInputStream(path);
+        return in;
+      }
+
+      @Override
+      public int read() throws IOException {
+        return open().read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return open().read(b, off, len);
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        return open().skip(n);
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (in != null)
+          in.close();
+      }
+    };
+  }
+
+}
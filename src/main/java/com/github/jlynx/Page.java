@@ -0,0 +1,60 @@
+package com.github.jlynx;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query, see
+ * {@link DAO#page(Class, String, Object[], String[], Object[], int)}. The next
+ * page is read by passing {@link #getNextKey()} as <code>lastKey</code>, e.g.
+ *
+ * <pre>
+ * Page&lt;Audit&gt; page = dao.page(Audit.class, "SELECT * FROM AUDIT", null, new String[] { "ID" }, null, 500);
+ * while (page.hasNext())
+ *   page = dao.page(Audit.class, "SELECT * FROM AUDIT", null, new String[] { "ID" }, page.getNextKey(), 500);
+ * </pre>
+ *
+ * @param <T> result class
+ * @since v2.4
+ */
+public final class Page<T> {
+
+  private final List<T> items;
+  private final Object[] nextKey;
+
+  Page(List<T> items, Object[] nextKey) {
+    this.items = Collections.unmodifiableList(items);
+    this.nextKey = nextKey;
+  }
+
+  /**
+   * @return the rows of this page, unmodifiable
+   */
+  public List<T> getItems() {
+    return items;
+  }
+
+  /**
+   * @return true when more rows follow this page
+   */
+  public boolean hasNext() {
+    return nextKey != null;
+  }
+
+  /**
+   * Continuation token: the order column values of the last row, in the order
+   * of the order columns.
+   *
+   * @return key after which the next page starts, or <code>null</code> on the
+   *         last page
+   */
+  public Object[] getNextKey() {
+    return nextKey == null ? null : nextKey.clone();
+  }
+
+  @Override
+  public String toString() {
+    return "Page[" + items.size() + " rows" + (nextKey == null ? ", last" : "") + "]";
+  }
+
+}
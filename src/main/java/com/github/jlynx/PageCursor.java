@@ -0,0 +1,103 @@
+package com.github.jlynx;
+
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Cursor over the pages of a keyset-paginated query for
+ * {@link DAOFactory#pages}: when a page is returned the next one is already
+ * being read on the executor, each page on its own DAO.
+ */
+final class PageCursor<T> implements Cursor<Page<T>> {
+
+  private final DAOFactory factory;
+  private final Executor executor;
+  private final Class<T> resultClass;
+  private final String query;
+  private final Object[] params;
+  private final String[] orderBy;
+  private final int pageSize;
+
+  private CompletableFuture<Page<T>> pending;
+  private boolean first = true;
+
+  PageCursor(DAOFactory factory, Executor executor, Class<T> resultClass, String query, Object[] params,
+      String[] orderBy, int pageSize) {
+    if (pageSize < 1)
+      throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+    this.factory = factory;
+    this.executor = executor;
+    this.resultClass = resultClass;
+    this.query = query;
+    this.params = params == null ? null : params.clone();
+    this.orderBy = orderBy.clone();
+    this.pageSize = pageSize;
+    this.pending = fetch(null);
+  }
+
+  private CompletableFuture<Page<T>> fetch(Object[] lastKey) {
+    CompletableFuture<Page<T>> future = new CompletableFuture<>();
+    executor.execute(() -> {
+      if (future.isDone())
+        return; // closed while queued
+      try {
+        future.complete(factory.newDAO().page(resultClass, query, params, orderBy, lastKey, pageSize));
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (pending == null)
+      return false;
+    // an empty result has one empty page, not returned
+    if (first && join(pending).getItems().isEmpty())
+      pending = null;
+    return pending != null;
+  }
+
+  @Override
+  public Page<T> next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    Page<T> page = join(pending);
+    first = false;
+    pending = page.hasNext() ? fetch(page.getNextKey()) : null;
+    return page;
+  }
+
+  private Page<T> join(CompletableFuture<Page<T>> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      pending = null;
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new RuntimeException(cause.getMessage(), cause);
+    } catch (CancellationException e) {
+      pending = null;
+      throw new NoSuchElementException("Cursor closed");
+    }
+  }
+
+  /**
+   * Abandons the page being read ahead; its DAO releases the connection when
+   * the query completes.
+   */
+  @Override
+  public void close() throws SQLException {
+    if (pending != null) {
+      pending.cancel(false);
+      pending = null;
+    }
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.github.jlynx;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Phase timings of one DAO operation for {@link DAOListener}s and JDK Flight
+ * Recorder ({@link FlightEvents}). Each DAO owns a probe, created on first use;
+ * when no listener is registered and no recording is running operations get
+ * {@link #NONE}, whose methods do nothing, so nothing is timed or allocated.
+ * Flight recorder events are disabled with <code>-Djlynx.jfr=false</code>.
+ * <p>
+ * Usage: {@link #start()}, then {@link #connected()}, {@link #built()},
+ * {@link #executed()} and {@link #mapped()} as phases complete (each adds the
+ * time since the previous mark), {@link #statement(String, int)},
+ * {@link #fail(Throwable)} and finally
+ * {@link #end(String, String, long)}.
+ */
+final class Probe {
+
+  static final Probe NONE = new Probe();
+
+  private final static DAOListener[] EMPTY = new DAOListener[0];
+  private final static ReentrantLock lock = new ReentrantLock();
+  private static volatile DAOListener[] listeners = EMPTY;
+  // set by FlightEvents while a flight recording is running
+  static volatile boolean recording;
+
+  static {
+    try {
+      for (DAOListener listener : ServiceLoader.load(DAOListener.class))
+        register(listener);
+    } catch (ServiceConfigurationError e) {
+      LoggerFactory.getLogger("jlynx").warn("DAOListener not loaded - " + e.getMessage());
+    }
+    if (!"false".equals(System.getProperty("jlynx.jfr")))
+      try {
+        Class.forName("jdk.jfr.FlightRecorder");
+        FlightEvents.install();
+      } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+        LoggerFactory.getLogger("jlynx").debug("Flight recorder events not available - " + e);
+      }
+  }
+
+  private long start;
+  private long mark;
+  private long connection;
+  private long build;
+  private long execution;
+  private long mapping;
+  private String sql;
+  private int binds;
+  private Throwable failure;
+  private FlightEvents flight;
+  private boolean flying;
+
+  static void register(DAOListener listener) {
+    if (listener == null)
+      throw new IllegalArgumentException("DAOListener is required");
+    lock.lock();
+    try {
+      DAOListener[] copy = new DAOListener[listeners.length + 1];
+      System.arraycopy(listeners, 0, copy, 0, listeners.length);
+      copy[listeners.length] = listener;
+      listeners = copy;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  static void unregister(DAOListener listener) {
+    lock.lock();
+    try {
+      for (int i = 0; i < listeners.length; i++)
+        if (listeners[i] == listener) {
+          DAOListener[] copy = new DAOListener[listeners.length - 1];
+          System.arraycopy(listeners, 0, copy, 0, i);
+          System.arraycopy(listeners, i + 1, copy, i, copy.length - i);
+          listeners = copy.length == 0 ? EMPTY : copy;
+          return;
+        }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  static boolean active() {
+    return listeners.length > 0 || recording;
+  }
+
+  Probe start() {
+    if (this != NONE) {
+      start = mark = System.nanoTime();
+      connection = build = execution = mapping = 0;
+      sql = null;
+      binds = 0;
+      failure = null;
+      flying = recording;
+      if (flying) {
+        if (flight == null)
+          flight = new FlightEvents();
+        flight.start();
+      }
+    }
+    return this;
+  }
+
+  private long lap() {
+    long now = System.nanoTime();
+    long elapsed = now - mark;
+    mark = now;
+    return elapsed;
+  }
+
+  void connected() {
+    if (this != NONE) {
+      connection += lap();
+      if (flying)
+        flight.connected();
+    }
+  }
+
+  void built() {
+    if (this != NONE)
+      build += lap();
+  }
+
+  void executed() {
+    if (this != NONE) {
+      execution += lap();
+      if (flying)
+        flight.executed();
+    }
+  }
+
+  void mapped() {
+    if (this != NONE) {
+      mapping += lap();
+      if (flying)
+        flight.mapped();
+    }
+  }
+
+  // the first statement of an operation is reported
+  void statement(String sql, int binds) {
+    if (this != NONE && this.sql == null) {
+      this.sql = sql;
+      this.binds = binds;
+    }
+  }
+
+  void fail(Throwable failure) {
+    if (this != NONE)
+      this.failure = failure;
+  }
+
+  void end(String operation, String entity, long rows) {
+    if (this == NONE)
+      return;
+    if (flying) {
+      flying = false;
+      flight.end(operation, entity, sql, binds, rows, failure);
+    }
+    DAOListener[] listeners = Probe.listeners;
+    if (listeners.length == 0)
+      return;
+    DAOEvent event = new DAOEvent(operation, entity, sql, binds, rows, connection, build, execution, mapping,
+        System.nanoTime() - start, failure);
+    for (DAOListener listener : listeners)
+      try {
+        listener.operationCompleted(event);
+      } catch (RuntimeException e) {
+        LoggerFactory.getLogger("jlynx").warn("DAOListener failed - " + e, e);
+      }
+  }
+
+}
@@ -0,0 +1,309 @@
+package com.github.jlynx;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM-wide cache of {@link DAO#listOf} results, used for queries enabled with
+ * {@link DAO#cacheResults(long, String...)} and keyed by result class, SQL and
+ * parameters. The cache is bounded by the total number of cached rows, least
+ * recently used results are evicted first.
+ * <p>
+ * A result is invalidated when jLynx writes to one of the tables it depends on
+ * (the @Table of the written beans); {@link DAO#executeSql} clears the cache.
+ * Hits return an unmodifiable list of copies, callers cannot change cached
+ * rows; date and array values are copied too, other mutable values are shared.
+ * Changes made outside jLynx are only seen after the TTL expires or
+ * {@link #invalidate(String)}.
+ *
+ * @since v2.4
+ */
+public final class QueryCache {
+
+  /**
+   * Counters since start-up.
+   */
+  public static final class Statistics {
+
+    private final int size;
+    private final int rows;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+
+    private Statistics(int size, int rows, long hits, long misses, long evictions, long invalidations) {
+      this.size = size;
+      this.rows = rows;
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.invalidations = invalidations;
+    }
+
+    /**
+     * @return cached results
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * @return rows of all cached results
+     */
+    public int getRows() {
+      return rows;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return results removed because the cache was full or the TTL expired
+     */
+    public long getEvictions() {
+      return evictions;
+    }
+
+    /**
+     * @return results removed because a table they depend on was written
+     */
+    public long getInvalidations() {
+      return invalidations;
+    }
+
+    @Override
+    public String toString() {
+      return "QueryCache.Statistics[size=" + size + ", rows=" + rows + ", hits=" + hits + ", misses=" + misses
+          + ", evictions=" + evictions + ", invalidations=" + invalidations + "]";
+    }
+  }
+
+  static final class Key {
+
+    private final Class<?> type;
+    private final String sql;
+    private final Object[] params;
+    private final int hash;
+
+    Key(Class<?> type, String sql, Object[] params) {
+      this.type = type;
+      this.sql = sql;
+      this.params = params == null ? new Object[0] : params.clone();
+      this.hash = (type.hashCode() * 31 + sql.hashCode()) * 31 + Arrays.deepHashCode(this.params);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key))
+        return false;
+      Key key = (Key) o;
+      return type == key.type && sql.equals(key.sql) && Arrays.deepEquals(params, key.params);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class Entry {
+
+    private final Object[] rows;
+    private final String[] tables;
+    private final long expires;
+
+    private Entry(Object[] rows, String[] tables, long expires) {
+      this.rows = rows;
+      this.tables = tables;
+      this.expires = expires;
+    }
+  }
+
+  private final static ReentrantLock lock = new ReentrantLock();
+  private final static LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  // incremented by every invalidation, a result read before a write is not cached
+  private final static AtomicLong version = new AtomicLong();
+  private static volatile int maxRows = 10000;
+  private static int rows;
+
+  private final static LongAdder hits = new LongAdder();
+  private final static LongAdder misses = new LongAdder();
+  private final static LongAdder evictions = new LongAdder();
+  private final static LongAdder invalidations = new LongAdder();
+
+  private QueryCache() {
+  }
+
+  /**
+   * @param rows maximum number of rows of all cached results, default 10000;
+   *             larger results are not cached
+   */
+  public static void setMaxRows(int rows) {
+    if (rows < 0)
+      throw new IllegalArgumentException("rows must not be negative: " + rows);
+    lock.lock();
+    try {
+      maxRows = rows;
+      evict();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the results that depend on a table, e.g. after changes made outside
+   * jLynx.
+   *
+   * @param table table name, case-insensitive
+   */
+  public static void invalidate(String table) {
+    String name = table.toUpperCase(Locale.ROOT);
+    lock.lock();
+    try {
+      version.incrementAndGet();
+      Iterator<Entry> it = entries.values().iterator();
+      while (it.hasNext()) {
+        Entry entry = it.next();
+        for (String t : entry.tables)
+          if (t.equals(name)) {
+            it.remove();
+            rows -= entry.rows.length;
+            invalidations.increment();
+            break;
+          }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes all results.
+   */
+  public static void clear() {
+    lock.lock();
+    try {
+      version.incrementAndGet();
+      invalidations.add(entries.size());
+      entries.clear();
+      rows = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public static Statistics getStatistics() {
+    lock.lock();
+    try {
+      return new Statistics(entries.size(), rows, hits.sum(), misses.sum(), evictions.sum(), invalidations.sum());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  static long version() {
+    return version.get();
+  }
+
+  /**
+   * @return copies of the cached rows, or <code>null</code> when not cached or
+   *         expired
+   */
+  static <T> List<T> get(Key key) throws ReflectiveOperationException {
+    Entry entry;
+    lock.lock();
+    try {
+      entry = entries.get(key);
+      if (entry != null && entry.expires != 0 && entry.expires - System.nanoTime() < 0) {
+        entries.remove(key);
+        rows -= entry.rows.length;
+        evictions.increment();
+        entry = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return copy(key.type, entry.rows);
+  }
+
+  /**
+   * Caches copies of a result, unless a table was written after
+   * <code>version</code> was read.
+   *
+   * @param tables tables the query depends on, upper case
+   * @return the result as an unmodifiable list
+   */
+  static <T> List<T> put(Key key, List<T> result, String[] tables, long ttlSeconds, long version)
+      throws ReflectiveOperationException {
+
+    List<T> unmodifiable = Collections.unmodifiableList(result);
+    if (result.size() > maxRows)
+      return unmodifiable;
+
+    Object[] copies = copy(key.type, result.toArray()).toArray();
+    Entry entry = new Entry(copies, tables, ttlSeconds == 0 ? 0 : (System.nanoTime() + ttlSeconds * 1000000000L) | 1);
+    lock.lock();
+    try {
+      if (QueryCache.version.get() != version)
+        return unmodifiable;
+      Entry old = entries.put(key, entry);
+      if (old != null)
+        rows -= old.rows.length;
+      rows += copies.length;
+      evict();
+    } finally {
+      lock.unlock();
+    }
+    return unmodifiable;
+  }
+
+  // pre-condition: lock held
+  private static void evict() {
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (rows > maxRows && eldest.hasNext()) {
+      rows -= eldest.next().rows.length;
+      eldest.remove();
+      evictions.increment();
+    }
+  }
+
+  // copies through the public no-arg constructor, final fields are not copied;
+  // dates and arrays are copied, other values shared
+  @SuppressWarnings("unchecked")
+  private static <T> List<T> copy(Class<?> type, Object[] beans) throws ReflectiveOperationException {
+    EntityMetadata metadata = EntityMetadata.of(type);
+    Constructor<?> constructor = type.getConstructor();
+    List<T> copies = new ArrayList<>(beans.length);
+    for (Object bean : beans) {
+      Object copy = constructor.newInstance();
+      for (EntityMetadata.Property property : metadata.getProperties())
+        if (property.field == null || !Modifier.isFinal(property.field.getModifiers()))
+          property.set(copy, BeanUtil.copyValue(property.get(bean)));
+      copies.add((T) copy);
+    }
+    return Collections.unmodifiableList(copies);
+  }
+
+}
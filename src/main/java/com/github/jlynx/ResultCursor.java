@@ -0,0 +1,106 @@
+package com.github.jlynx;
+
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cursor implementation used by DAOImpl, holds the statement and result set
+ * open until closed.
+ */
+final class ResultCursor<T> implements Cursor<T> {
+
+  private final Connection conn;
+  private final PreparedStatement ps;
+  private final ResultSet rs;
+  private final Constructor<T> constructor;
+  private final RowMapper mapper;
+  private final boolean closeConnection;
+  private final boolean restoreAutoCommit;
+
+  private boolean fetched;
+  private boolean hasNext;
+  private boolean closed;
+
+  /**
+   * @param closeConnection   connection is owned by the cursor
+   * @param restoreAutoCommit auto-commit was switched off for a server-side
+   *                          cursor
+   */
+  ResultCursor(Connection conn, PreparedStatement ps, ResultSet rs, Constructor<T> constructor, boolean skipLobs,
+      boolean closeConnection, boolean restoreAutoCommit) throws SQLException {
+    this.conn = conn;
+    this.ps = ps;
+    this.rs = rs;
+    this.constructor = constructor;
+    this.mapper = RowMapper.of(rs, constructor.getDeclaringClass(), skipLobs, true);
+    this.closeConnection = closeConnection;
+    this.restoreAutoCommit = restoreAutoCommit;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (!fetched) {
+      fetched = true;
+      try {
+        hasNext = rs.next();
+        if (!hasNext)
+          close();
+      } catch (SQLException e) {
+        closeQuietly();
+        throw new RuntimeException(e.getMessage(), e);
+      }
+    }
+    return hasNext;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    fetched = false;
+    try {
+      T obj = constructor.newInstance();
+      mapper.map(rs, obj);
+      return obj;
+    } catch (SQLException e) {
+      closeQuietly();
+      throw new RuntimeException(e.getMessage(), e);
+    } catch (ReflectiveOperationException e) {
+      closeQuietly();
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (closed)
+      return;
+    closed = true;
+    fetched = true;
+    hasNext = false;
+    try {
+      rs.close();
+      ps.close();
+    } finally {
+      if (restoreAutoCommit && !conn.isClosed())
+        conn.setAutoCommit(true);
+      if (closeConnection)
+        conn.close();
+    }
+  }
+
+  void closeQuietly() {
+    try {
+      close();
+    } catch (SQLException e) {
+      LoggerFactory.getLogger("jlynx").error(e.getMessage(), e);
+    }
+  }
+
+}
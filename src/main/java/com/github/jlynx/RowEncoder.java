@@ -0,0 +1,352 @@
+package com.github.jlynx;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Writes ResultSet rows as CSV or JSON Lines straight into a reusable byte
+ * buffer, UTF-8 encoded, without creating beans. Column handling (typed getter,
+ * quoting, JSON key) is resolved once per query; integers and booleans are
+ * encoded without creating objects.
+ */
+final class RowEncoder {
+
+  private final static int BUFFER_SIZE = 64 * 1024;
+  private final static byte[] TRUE = { 't', 'r', 'u', 'e' };
+  private final static byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  private final static byte[] NULL = { 'n', 'u', 'l', 'l' };
+  private final static byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private final static int TEXT = 0;
+  private final static int INTEGER = 1;
+  private final static int DECIMAL = 2;
+  private final static int DOUBLE = 3;
+  private final static int BOOLEAN = 4;
+  private final static int BINARY = 5;
+
+  private final WritableByteChannel out;
+  private final Format format;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final byte[] digits = new byte[20];
+
+  private final int[] columns;
+  private final int[] kinds;
+  private final String[] names;
+  private final byte[][] keys;
+
+  /**
+   * @param metadata result class metadata, only mapped columns are written
+   *                 under their {@link Column} name; <code>null</code> for all
+   *                 columns under their labels
+   */
+  RowEncoder(ResultSetMetaData rsmd, EntityMetadata metadata, Format format, WritableByteChannel out)
+      throws SQLException {
+
+    this.out = out;
+    this.format = format;
+
+    List<Integer> cols = new ArrayList<>();
+    List<String> labels = new ArrayList<>();
+    for (int colIndex = 1; colIndex <= rsmd.getColumnCount(); colIndex++) {
+      String label = rsmd.getColumnLabel(colIndex);
+      if (metadata != null) {
+        EntityMetadata.Property property = metadata.getProperty(label);
+        if (property == null)
+          continue;
+        label = property.column;
+      }
+      cols.add(colIndex);
+      labels.add(label);
+    }
+
+    int count = cols.size();
+    this.columns = new int[count];
+    this.kinds = new int[count];
+    this.names = labels.toArray(new String[count]);
+    this.keys = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      columns[i] = cols.get(i);
+      kinds[i] = getKind(rsmd.getColumnType(columns[i]));
+      keys[i] = ((i == 0 ? "{" : ",") + quote(names[i]) + ":").getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static int getKind(int type) {
+    switch (type) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+        return INTEGER;
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        return DECIMAL;
+      case Types.REAL:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return DOUBLE;
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return BOOLEAN;
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+      case Types.BLOB:
+        return BINARY;
+      default:
+        return TEXT;
+    }
+  }
+
+  /**
+   * CSV header line; nothing for JSON Lines.
+   */
+  void writeHeader() throws IOException {
+    if (format != Format.CSV)
+      return;
+    for (int i = 0; i < names.length; i++) {
+      if (i > 0)
+        put((byte) ',');
+      writeCsv(names[i]);
+    }
+    newLine();
+  }
+
+  // pre-condition: ResultSet next() called
+  void write(ResultSet rs) throws SQLException, IOException {
+    for (int i = 0; i < columns.length; i++) {
+      if (format == Format.CSV) {
+        if (i > 0)
+          put((byte) ',');
+      } else
+        put(keys[i]);
+      writeValue(rs, i);
+    }
+    if (format == Format.JSON_LINES) {
+      if (columns.length == 0)
+        put((byte) '{');
+      put((byte) '}');
+    }
+    newLine();
+  }
+
+  private void writeValue(ResultSet rs, int i) throws SQLException, IOException {
+
+    final int colIndex = columns[i];
+    final boolean csv = format == Format.CSV;
+
+    switch (kinds[i]) {
+      case INTEGER:
+        long l = rs.getLong(colIndex);
+        if (rs.wasNull())
+          writeNull();
+        else
+          writeLong(l);
+        return;
+      case BOOLEAN:
+        boolean b = rs.getBoolean(colIndex);
+        if (rs.wasNull())
+          writeNull();
+        else
+          put(b ? TRUE : FALSE);
+        return;
+      case DECIMAL:
+        BigDecimal decimal = rs.getBigDecimal(colIndex);
+        if (decimal == null)
+          writeNull();
+        else
+          putAscii(decimal.toPlainString());
+        return;
+      case DOUBLE:
+        double d = rs.getDouble(colIndex);
+        if (rs.wasNull() || !csv && (Double.isNaN(d) || Double.isInfinite(d)))
+          writeNull();
+        else
+          putAscii(Double.toString(d));
+        return;
+      case BINARY:
+        byte[] bytes = rs.getBytes(colIndex);
+        if (bytes == null)
+          writeNull();
+        else if (csv)
+          put(Base64.getEncoder().encode(bytes));
+        else {
+          put((byte) '"');
+          put(Base64.getEncoder().encode(bytes));
+          put((byte) '"');
+        }
+        return;
+      default:
+        String text = rs.getString(colIndex);
+        if (text == null)
+          writeNull();
+        else if (csv)
+          writeCsv(text);
+        else
+          writeJson(text);
+    }
+  }
+
+  private void writeNull() throws IOException {
+    if (format == Format.JSON_LINES)
+      put(NULL);
+  }
+
+  private void writeLong(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      putAscii(Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      put((byte) '-');
+      value = -value;
+    }
+    int pos = digits.length;
+    do {
+      digits[--pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    ensure(digits.length - pos);
+    buffer.put(digits, pos, digits.length - pos);
+  }
+
+  // quoted only when needed, RFC 4180
+  private void writeCsv(String text) throws IOException {
+    boolean quote = false;
+    for (int i = 0; i < text.length() && !quote; i++) {
+      char c = text.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (quote || text.isEmpty()) {
+      put((byte) '"');
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c == '"')
+          put((byte) '"');
+        i += putChar(text, i, c);
+      }
+      put((byte) '"');
+    } else
+      for (int i = 0; i < text.length(); i++)
+        i += putChar(text, i, text.charAt(i));
+  }
+
+  private void writeJson(String text) throws IOException {
+    put((byte) '"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '"':
+        case '\\':
+          put((byte) '\\');
+          put((byte) c);
+          break;
+        case '\n':
+          put((byte) '\\');
+          put((byte) 'n');
+          break;
+        case '\r':
+          put((byte) '\\');
+          put((byte) 'r');
+          break;
+        case '\t':
+          put((byte) '\\');
+          put((byte) 't');
+          break;
+        default:
+          if (c < 0x20) {
+            ensure(6);
+            buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0').put(HEX[c >> 4])
+                .put(HEX[c & 0xF]);
+          } else
+            i += putChar(text, i, c);
+      }
+    }
+    put((byte) '"');
+  }
+
+  // UTF-8 encoding of one character or surrogate pair, returns 1 for a pair
+  private int putChar(String text, int i, char c) throws IOException {
+    ensure(4);
+    if (c < 0x80)
+      buffer.put((byte) c);
+    else if (c < 0x800) {
+      buffer.put((byte) (0xC0 | c >> 6));
+      buffer.put((byte) (0x80 | c & 0x3F));
+    } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+        && Character.isLowSurrogate(text.charAt(i + 1))) {
+      int cp = Character.toCodePoint(c, text.charAt(i + 1));
+      buffer.put((byte) (0xF0 | cp >> 18));
+      buffer.put((byte) (0x80 | cp >> 12 & 0x3F));
+      buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+      buffer.put((byte) (0x80 | cp & 0x3F));
+      return 1;
+    } else if (Character.isSurrogate(c))
+      buffer.put((byte) '?');
+    else {
+      buffer.put((byte) (0xE0 | c >> 12));
+      buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+      buffer.put((byte) (0x80 | c & 0x3F));
+    }
+    return 0;
+  }
+
+  private void putAscii(String text) throws IOException {
+    ensure(text.length());
+    for (int i = 0; i < text.length(); i++)
+      buffer.put((byte) text.charAt(i));
+  }
+
+  private void newLine() throws IOException {
+    if (format == Format.CSV)
+      put((byte) '\r');
+    put((byte) '\n');
+  }
+
+  private void put(byte b) throws IOException {
+    ensure(1);
+    buffer.put(b);
+  }
+
+  private void put(byte[] bytes) throws IOException {
+    for (int off = 0; off < bytes.length;) {
+      ensure(1);
+      int n = Math.min(buffer.remaining(), bytes.length - off);
+      buffer.put(bytes, off, n);
+      off += n;
+    }
+  }
+
+  private void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes)
+      flush();
+  }
+
+  /**
+   * Writes buffered bytes to the channel.
+   */
+  void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      out.write(buffer);
+    buffer.clear();
+  }
+
+  private static String quote(String name) {
+    StringBuilder sb = new StringBuilder(name.length() + 2).append('"');
+    for (char c : name.toCharArray())
+      sb.append(c == '"' || c == '\\' ? "\\" + c : String.valueOf(c));
+    return sb.append('"').toString();
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.github.jlynx;
+
+import java.sql.SQLException;
+
+/**
+ * Callback for row-by-row query processing.
+ *
+ * @param <T> result class
+ * @see com.github.jlynx.DAO#forEach(Class, String, Object[], RowHandler)
+ * @since v2.4
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+  /**
+   * Called once per row, in ResultSet order.
+   *
+   * @param row mapped row; in reuse mode the same instance on every call
+   * @throws SQLException to abort processing
+   */
+  void handle(T row) throws SQLException;
+
+}
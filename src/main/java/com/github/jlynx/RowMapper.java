@@ -0,0 +1,241 @@
+package com.github.jlynx;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Row mapping plan for one result class and ResultSet column signature: column
+ * index, typed getter and target property are resolved once and reused for
+ * every row of every execution of the same query.
+ * <p>
+ * LOB columns are read as declared by the property: Blob, Clob and NClob
+ * properties get the driver's locator, valid while the connection is; String
+ * properties get the whole value. InputStream and Reader properties get the
+ * driver's stream, valid for the current row, when rows are handled one at a
+ * time (forEach, cursors); otherwise the whole value is read into an in-memory
+ * stream. With <code>skipLobs</code> LOB columns of other properties are not
+ * read.
+ */
+final class RowMapper {
+
+  @FunctionalInterface
+  private interface Reader {
+    Object read(ResultSet rs, int colIndex) throws SQLException;
+  }
+
+  private final static Reader BINARY = ResultSet::getBinaryStream;
+  private final static Reader CHARACTERS = ResultSet::getCharacterStream;
+  private final static Reader BLOB = ResultSet::getBlob;
+  private final static Reader CLOB = ResultSet::getClob;
+  private final static Reader NCLOB = ResultSet::getNClob;
+  // streams that outlive the row
+  private final static Reader BYTES = (rs, colIndex) -> {
+    byte[] value = rs.getBytes(colIndex);
+    return value == null ? null : new ByteArrayInputStream(value);
+  };
+  private final static Reader TEXT = (rs, colIndex) -> {
+    String value = rs.getString(colIndex);
+    return value == null ? null : new StringReader(value);
+  };
+  private final static Reader STRING = ResultSet::getString;
+  private final static Reader TIMESTAMP = (rs, colIndex) -> {
+    Object value = rs.getObject(colIndex, LocalDateTime.class);
+    return value == null ? rs.getTimestamp(colIndex) : value;
+  };
+  private final static Reader DATE = (rs, colIndex) -> {
+    Object value = rs.getObject(colIndex, LocalDate.class);
+    return value == null ? rs.getDate(colIndex) : value;
+  };
+  private final static Reader INTEGER = ResultSet::getInt;
+  private final static Reader BIGINT = ResultSet::getLong;
+  private final static Reader DECIMAL = ResultSet::getBigDecimal;
+  private final static Reader FLOAT = ResultSet::getFloat;
+  private final static Reader BOOLEAN = ResultSet::getBoolean;
+  private final static Reader OBJECT = ResultSet::getObject;
+  // wrapper properties, SQL NULL is read as null instead of 0 or false
+  private final static Reader NULLABLE_INTEGER = nullable(INTEGER);
+  private final static Reader NULLABLE_BIGINT = nullable(BIGINT);
+  private final static Reader NULLABLE_FLOAT = nullable(FLOAT);
+  private final static Reader NULLABLE_BOOLEAN = nullable(BOOLEAN);
+
+  private final int[] columns;
+  private final Reader[] readers;
+  private final EntityMetadata.Property[] properties;
+  // no LOB columns skipped or read as locators or streams
+  private final boolean cacheable;
+
+  private RowMapper(EntityMetadata metadata, ResultSetMetaData rsmd, boolean skipLobs, boolean streams)
+      throws SQLException {
+
+    int count = rsmd.getColumnCount();
+    int[] cols = new int[count];
+    Reader[] rdrs = new Reader[count];
+    EntityMetadata.Property[] props = new EntityMetadata.Property[count];
+
+    boolean values = true;
+    int j = 0;
+    for (int colIndex = 1; colIndex <= count; colIndex++) {
+
+      String colName = rsmd.getColumnName(colIndex);
+      EntityMetadata.Property property = metadata.getProperty(colName);
+      if (property == null) {
+        LoggerFactory.getLogger("jlynx")
+            .warn(metadata.getType().getSimpleName() + "#" + colName + " - no property exists");
+        continue;
+      }
+
+      int type = rsmd.getColumnType(colIndex);
+      if (Lobs.isHandle(property.type))
+        values = false;
+      else if (skipLobs && Lobs.isLob(type)) {
+        values = false;
+        continue;
+      }
+
+      cols[j] = colIndex;
+      rdrs[j] = getReader(type, property.type, streams);
+      props[j++] = property;
+    }
+
+    this.cacheable = values;
+    this.columns = Arrays.copyOf(cols, j);
+    this.readers = Arrays.copyOf(rdrs, j);
+    this.properties = Arrays.copyOf(props, j);
+  }
+
+  /**
+   * Mapping plan for a ResultSet, cached per result class and column signature.
+   *
+   * @param skipLobs LOB columns are not read, unless the property is a locator
+   *                 or stream
+   * @param streams  stream properties get the driver's stream, only valid until
+   *                 the next row; otherwise the value is read in full
+   */
+  static RowMapper of(ResultSet rs, Class<?> resultClass, boolean skipLobs, boolean streams)
+      throws SQLException {
+
+    EntityMetadata metadata = EntityMetadata.of(resultClass);
+    ResultSetMetaData rsmd = rs.getMetaData();
+    int count = rsmd.getColumnCount();
+
+    StringBuilder signature = new StringBuilder(count * 16);
+    if (skipLobs)
+      signature.append("-lobs,");
+    if (streams)
+      signature.append("+streams,");
+    for (int colIndex = 1; colIndex <= count; colIndex++)
+      signature.append(rsmd.getColumnName(colIndex)).append(':').append(rsmd.getColumnType(colIndex)).append(',');
+
+    String key = signature.toString();
+    RowMapper mapper = metadata.getRowMapper(key);
+    if (mapper == null)
+      mapper = metadata.putRowMapper(key, new RowMapper(metadata, rsmd, skipLobs, streams));
+    return mapper;
+  }
+
+  /**
+   * @return false when mapped beans do not hold all column values, e.g. for the
+   *         entity cache
+   */
+  boolean isCacheable() {
+    return cacheable;
+  }
+
+  // pre-condition: ResultSet next() called
+  void map(ResultSet rs, Object object) throws SQLException {
+    for (int i = 0; i < columns.length; i++)
+      BeanUtil.setValue(properties[i], object, readers[i].read(rs, columns[i]));
+  }
+
+  private static Reader nullable(Reader reader) {
+    return (rs, colIndex) -> {
+      Object value = reader.read(rs, colIndex);
+      return rs.wasNull() ? null : value;
+    };
+  }
+
+  private static Reader getReader(int type, Class<?> propertyType, boolean streams) {
+    Reader reader = getReader(type, propertyType);
+    if (!streams && reader == BINARY)
+      return BYTES;
+    if (!streams && reader == CHARACTERS)
+      return TEXT;
+    return reader;
+  }
+
+  private static Reader getReader(int type, Class<?> propertyType) {
+    if (propertyType == Blob.class)
+      return BLOB;
+    if (propertyType == Clob.class)
+      return CLOB;
+    if (propertyType == NClob.class)
+      return NCLOB;
+    if (propertyType == InputStream.class)
+      return BINARY;
+    if (propertyType == java.io.Reader.class)
+      return CHARACTERS;
+    Reader reader = getReader(type);
+    if (propertyType.isPrimitive())
+      return reader;
+    if (reader == INTEGER)
+      return NULLABLE_INTEGER;
+    if (reader == BIGINT)
+      return NULLABLE_BIGINT;
+    if (reader == FLOAT)
+      return NULLABLE_FLOAT;
+    if (reader == BOOLEAN)
+      return NULLABLE_BOOLEAN;
+    return reader;
+  }
+
+  private static Reader getReader(int type) {
+    switch (type) {
+      case Types.BLOB:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+        return BINARY;
+      case Types.VARCHAR:
+      case Types.CHAR:
+      case Types.CLOB:
+      case Types.LONGVARCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+        return STRING;
+      case Types.TIMESTAMP:
+      case Types.TIMESTAMP_WITH_TIMEZONE:
+        return TIMESTAMP;
+      case Types.DATE:
+        return DATE;
+      case Types.INTEGER:
+      case Types.TINYINT:
+      case Types.SMALLINT:
+        return INTEGER;
+      case Types.BIGINT:
+        return BIGINT;
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        return DECIMAL;
+      case Types.FLOAT:
+        return FLOAT;
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return BOOLEAN;
+      default:
+        return OBJECT;
+    }
+  }
+
+}
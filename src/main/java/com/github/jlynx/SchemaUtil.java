@@ -1,15 +1,28 @@
 package com.github.jlynx;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Utility class used internally within jLynx to view/build/maintain metadata.
@@ -20,9 +33,31 @@ final class SchemaUtil {
   static final int ORACLE = 100;
   static final int MSSQL = 200;
   static final int POSTGRESQL = 300;
+  static final int HSQLDB = 400;
 
   static java.util.Map<Integer, String> TYPE_MAPPINGS;
-  final private static Map<String, Set<String>> primaryKeys = new TreeMap<>();
+  final private static Map<String, Set<String>> primaryKeys = new ConcurrentHashMap<>();
+  final private static Map<String, Database> databases = new ConcurrentHashMap<>();
+  // DataSource or JNDI name -> database, so new connections need no metadata calls
+  final private static Map<Object, Database> sources = new WeakHashMap<>();
+  // guards sources; a lock rather than a monitor so virtual threads are not pinned
+  final private static ReentrantLock sourcesLock = new ReentrantLock();
+
+  /**
+   * Database properties that do not change between connections.
+   */
+  static final class Database {
+
+    final String url;
+    final int vendor;
+    final boolean generatedKeys;
+
+    private Database(String url, int vendor, boolean generatedKeys) {
+      this.url = url;
+      this.vendor = vendor;
+      this.generatedKeys = generatedKeys;
+    }
+  }
 
   static {
 
@@ -65,25 +100,164 @@ final class SchemaUtil {
       return ORACLE;
     else if ("PostgreSQL".equalsIgnoreCase(dbName))
       return POSTGRESQL;
+    else if ("HSQL Database Engine".equalsIgnoreCase(dbName))
+      return HSQLDB;
 
     return 0;
   }
 
-  static Set<String> getPK(Connection conn, String table) throws SQLException {
+  /**
+   * Database of a connection, cached per connection source.
+   *
+   * @param source DataSource or JNDI name, <code>null</code> for a connection
+   *               supplied by the caller (not cached)
+   */
+  static Database getDatabase(Object source, Connection conn) throws SQLException {
+
+    Database database = findDatabase(source);
+    if (database == null) {
+      DatabaseMetaData dm = conn.getMetaData();
+      String url = sanitizeUrl(dm.getURL());
+      database = databases.get(url);
+      if (database == null) {
+        database = new Database(url, findDbVendor(dm), dm.supportsGetGeneratedKeys());
+        Database existing = databases.putIfAbsent(url, database);
+        if (existing != null)
+          database = existing;
+      }
+      if (source != null) {
+        sourcesLock.lock();
+        try {
+          sources.put(source, database);
+        } finally {
+          sourcesLock.unlock();
+        }
+      }
+    }
+    return database;
+  }
+
+  /**
+   * Connection URL as cache and snapshot key: passwords in the user info
+   * (<code>user:password@</code>, Oracle <code>user/password@</code>) and
+   * password, secret and token parameters are removed; the remaining parts tell
+   * databases and schemas apart.
+   */
+  static String sanitizeUrl(String url) {
+    if (url == null)
+      return null;
+
+    int params = url.length();
+    for (int i = 0; i < url.length(); i++)
+      if (url.charAt(i) == '?' || url.charAt(i) == ';') {
+        params = i;
+        break;
+      }
+
+    StringBuilder sb = new StringBuilder(url.length());
+    String base = url.substring(0, params);
+    int at = base.lastIndexOf('@');
+    if (at >= 0) {
+      int start = base.lastIndexOf("//", at);
+      start = start >= 0 ? start + 2 : base.lastIndexOf(':', at) + 1;
+      int end = start;
+      while (end < at && base.charAt(end) != ':' && base.charAt(end) != '/')
+        end++;
+      sb.append(base, 0, end).append(base, at, base.length());
+    } else
+      sb.append(base);
+
+    // parameters keep their separator, a dropped first '?' moves to the next
+    boolean query = false;
+    for (int i = params; i < url.length();) {
+      int next = i + 1;
+      while (next < url.length() && url.charAt(next) != '&' && url.charAt(next) != ';')
+        next++;
+      char separator = url.charAt(i);
+      String param = url.substring(i + 1, next);
+      int eq = param.indexOf('=');
+      String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+      if (name.contains("password") || name.contains("pwd") || name.contains("secret")
+          || name.contains("token"))
+        query |= separator == '?';
+      else {
+        sb.append(query && separator == '&' ? '?' : separator).append(param);
+        query = false;
+      }
+      i = next;
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return cached database of a connection source, or <code>null</code>
+   */
+  static Database findDatabase(Object source) {
+    if (source == null)
+      return null;
+    sourcesLock.lock();
+    try {
+      return sources.get(source);
+    } finally {
+      sourcesLock.unlock();
+    }
+  }
+
+  /**
+   * Rows per multi-row INSERT, limited by the vendor's maximum number of bind
+   * parameters per statement and at most 1000 rows (the SQL Server limit), so
+   * the cached SQL stays small.
+   *
+   * @return 0 when multi-row VALUES is not supported
+   */
+  static int getMaxInsertRows(int vendor, int columns) {
+    int maxParams;
+    switch (vendor) {
+      case ORACLE:
+        return 0;
+      case MSSQL:
+        maxParams = 2099;
+        break;
+      case POSTGRESQL:
+      case HSQLDB:
+        maxParams = 32767;
+        break;
+      default:
+        maxParams = 2000;
+    }
+    return Math.min(1000, maxParams / Math.max(columns, 1));
+  }
+
+  /**
+   * Primary key columns of an entity, from {@link Id} annotations or database
+   * metadata.
+   */
+  static Set<String> getPK(Connection conn, String url, EntityMetadata metadata) throws SQLException {
+    Set<String> keys = metadata.getKeys();
+    return keys != null ? keys : getPK(conn, url, metadata.getTable());
+  }
+
+  /**
+   * @return cached primary key columns, or <code>null</code>
+   */
+  static Set<String> findPK(String url, String table) {
+    return primaryKeys.get(url + "|" + table);
+  }
+
+  static Set<String> getPK(Connection conn, String url, String table) throws SQLException {
 
-    String url = conn.getMetaData().getURL();
     String key = url + "|" + table;
     Set<String> pks = primaryKeys.get(key);
 
     if (pks == null) {
 
-      ResultSet resultSet = conn.getMetaData().getPrimaryKeys(null, null, table);
-
       pks = new HashSet<>();
       String pk = null;
-      while (resultSet.next()) {
-        pk = resultSet.getString(4);
-        pks.add(pk);
+      try (ResultSet resultSet = conn.getMetaData().getPrimaryKeys(null, null, table)) {
+        while (resultSet.next()) {
+          pk = resultSet.getString(4);
+          pks.add(pk);
+        }
       }
 
       if (pk == null)
@@ -91,12 +265,101 @@ final class SchemaUtil {
 
       pks.remove("");
       pks.remove(null);
-      if (!pks.isEmpty())
-        primaryKeys.put(key, pks);
+      if (pks.isEmpty())
+        throw new SQLException("Primary key missing for table: " + table);
 
+      pks = Collections.unmodifiableSet(pks);
+      Set<String> existing = primaryKeys.putIfAbsent(key, pks);
+      if (existing != null)
+        pks = existing;
     }
 
-    return primaryKeys.get(key);
+    return pks;
+  }
+
+  /**
+   * Writes cached database and primary key metadata to a properties file.
+   */
+  static void saveSnapshot(Path file) throws IOException {
+
+    Properties snapshot = new Properties();
+    for (Database database : databases.values()) {
+      snapshot.setProperty("vendor." + database.url, String.valueOf(database.vendor));
+      snapshot.setProperty("generatedKeys." + database.url, String.valueOf(database.generatedKeys));
+    }
+    for (Map.Entry<String, Set<String>> entry : primaryKeys.entrySet())
+      snapshot.setProperty("pk." + entry.getKey(), String.join(",", entry.getValue()));
+
+    try (OutputStream out = Files.newOutputStream(file)) {
+      snapshot.store(out, "jLynx schema metadata");
+    }
+  }
+
+  /**
+   * Loads metadata written by {@link #saveSnapshot(Path)}; entries already
+   * cached are kept.
+   *
+   * @return number of primary keys loaded
+   */
+  static int loadSnapshot(Path file) throws IOException {
+
+    Properties snapshot = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      snapshot.load(in);
+    }
+
+    int count = 0;
+    for (String name : snapshot.stringPropertyNames()) {
+      String value = snapshot.getProperty(name);
+      if (name.startsWith("vendor.")) {
+        String url = name.substring(7);
+        databases.putIfAbsent(url, new Database(url, Integer.parseInt(value),
+            Boolean.parseBoolean(snapshot.getProperty("generatedKeys." + url))));
+      } else if (name.startsWith("pk.") && !value.isEmpty()) {
+        Set<String> pks = new LinkedHashSet<>(Arrays.asList(value.split(",")));
+        if (primaryKeys.putIfAbsent(name.substring(3), Collections.unmodifiableSet(pks)) == null)
+          count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * java.sql.Types constant for a bean property type, used to bind nulls.
+   */
+  static int getSqlType(Class<?> type) {
+    if (type == String.class)
+      return Types.VARCHAR;
+    else if (type == Integer.class || type == int.class || type == Short.class || type == short.class)
+      return Types.INTEGER;
+    else if (type == Long.class || type == long.class)
+      return Types.BIGINT;
+    else if (type == BigDecimal.class)
+      return Types.NUMERIC;
+    else if (type == Double.class || type == double.class)
+      return Types.DOUBLE;
+    else if (type == Float.class || type == float.class)
+      return Types.REAL;
+    else if (type == Boolean.class || type == boolean.class)
+      return Types.BOOLEAN;
+    else if (type == java.sql.Date.class || type == java.time.LocalDate.class)
+      return Types.DATE;
+    else if (type == java.sql.Time.class || type == java.time.LocalTime.class)
+      return Types.TIME;
+    else if (type == java.sql.Timestamp.class || type == java.time.LocalDateTime.class
+        || type == java.util.Date.class)
+      return Types.TIMESTAMP;
+    else if (java.io.InputStream.class.isAssignableFrom(type) || type == java.nio.ByteBuffer.class)
+      return Types.LONGVARBINARY;
+    else if (java.io.Reader.class.isAssignableFrom(type))
+      return Types.LONGVARCHAR;
+    else if (type == java.sql.Blob.class)
+      return Types.BLOB;
+    else if (type == java.sql.Clob.class)
+      return Types.CLOB;
+    else if (type == java.sql.NClob.class)
+      return Types.NCLOB;
+    return Types.NULL;
   }
 
   static boolean isNumber(Object obj) {
@@ -0,0 +1,39 @@
+package com.github.jlynx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs operations that take at least a threshold as warnings to the
+ * <code>jlynx</code> logger, with the phase timings, rows and normalized SQL.
+ *
+ * <pre>
+ * DAOListener.register(new SlowQueryLogger(500));
+ * </pre>
+ *
+ * @since v2.4
+ */
+public final class SlowQueryLogger implements DAOListener {
+
+  private final static Logger logger = LoggerFactory.getLogger("jlynx");
+
+  private final long thresholdNanos;
+
+  /**
+   * @param thresholdMillis minimum total time of the operations to log
+   */
+  public SlowQueryLogger(long thresholdMillis) {
+    if (thresholdMillis < 0)
+      throw new IllegalArgumentException("thresholdMillis must not be negative: " + thresholdMillis);
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+  }
+
+  @Override
+  public void operationCompleted(DAOEvent event) {
+    if (event.getTotalNanos() >= thresholdNanos && logger.isWarnEnabled())
+      logger.warn("Slow " + event);
+  }
+
+}
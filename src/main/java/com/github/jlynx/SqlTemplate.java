@@ -0,0 +1,389 @@
+package com.github.jlynx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL text with <code>?</code> placeholders for CRUD operations, built once per
+ * (entity class, column set, vendor) and cached. Parameters are bound in the
+ * order of {@link #params}.
+ */
+final class SqlTemplate {
+
+  static final char INSERT = 'I';
+  static final char UPDATE = 'U';
+  static final char DELETE = 'D';
+  static final char SELECT = 'S';
+  static final char UPSERT = 'M';
+  static final char EXISTS = 'E';
+
+  private final static Map<Key, SqlTemplate> cache = new ConcurrentHashMap<>();
+
+  final String sql;
+  final EntityMetadata.Property[] params;
+
+  private SqlTemplate(String sql, EntityMetadata.Property[] params) {
+    this.sql = sql;
+    this.params = params;
+  }
+
+  static SqlTemplate insert(EntityMetadata metadata, int vendor, BitSet columns) {
+    return get(new Key(INSERT, metadata.getType(), vendor, columns, null, 1), metadata);
+  }
+
+  /**
+   * Multi-row <code>INSERT ... VALUES (...),(...)</code>; {@link #params} holds
+   * the parameters of one row, bound once per row. Cached like the other
+   * templates, so <code>rows</code> should be one fixed size per column set.
+   */
+  static SqlTemplate insert(EntityMetadata metadata, int vendor, BitSet columns, int rows) {
+    return get(new Key(INSERT, metadata.getType(), vendor, columns, null, rows), metadata);
+  }
+
+  /**
+   * @return true when {@link #upsert(EntityMetadata, int, BitSet, BitSet)}
+   *         supports the vendor
+   */
+  static boolean supportsUpsert(int vendor) {
+    return vendor == SchemaUtil.HSQLDB || vendor == SchemaUtil.MSSQL || vendor == SchemaUtil.ORACLE
+        || vendor == SchemaUtil.POSTGRESQL;
+  }
+
+  /**
+   * Single statement insert or update by primary key: <code>MERGE</code>, or
+   * <code>INSERT ... ON CONFLICT</code> on PostgreSQL.
+   *
+   * @param columns columns to write, including the keys
+   */
+  static SqlTemplate upsert(EntityMetadata metadata, int vendor, BitSet columns, BitSet keys) {
+    if (!supportsUpsert(vendor))
+      throw new UnsupportedOperationException("Native upsert not supported by vendor " + vendor);
+    return get(new Key(UPSERT, metadata.getType(), vendor, columns, keys, 0), metadata);
+  }
+
+  static SqlTemplate update(EntityMetadata metadata, int vendor, BitSet columns, BitSet keys) {
+    return get(new Key(UPDATE, metadata.getType(), vendor, columns, keys, 0), metadata);
+  }
+
+  static SqlTemplate delete(EntityMetadata metadata, int vendor, BitSet keys) {
+    return get(new Key(DELETE, metadata.getType(), vendor, null, keys, 0), metadata);
+  }
+
+  static SqlTemplate select(EntityMetadata metadata, int vendor, BitSet keys) {
+    return get(new Key(SELECT, metadata.getType(), vendor, null, keys, 0), metadata);
+  }
+
+  /**
+   * <code>SELECT 1</code> by key, to check that a row exists without reading
+   * its columns.
+   */
+  static SqlTemplate exists(EntityMetadata metadata, int vendor, BitSet keys) {
+    return get(new Key(EXISTS, metadata.getType(), vendor, null, keys, 0), metadata);
+  }
+
+  private static SqlTemplate get(Key key, EntityMetadata metadata) {
+    SqlTemplate template = cache.get(key);
+    if (template == null)
+      template = cache.computeIfAbsent(key, k -> build(k, metadata));
+    return template;
+  }
+
+  private static SqlTemplate build(Key key, EntityMetadata metadata) {
+
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    String table = metadata.getTable();
+    int columnCount = key.columns == null ? 0 : key.columns.cardinality();
+    int keyCount = key.keys == null ? 0 : key.keys.cardinality();
+    EntityMetadata.Property[] params = new EntityMetadata.Property[columnCount + keyCount];
+    StringBuilder sql = new StringBuilder(64 + 16 * properties.length);
+    int j = 0;
+
+    switch (key.kind) {
+      case UPSERT:
+        return key.vendor == SchemaUtil.POSTGRESQL ? buildOnConflict(key, metadata) : buildMerge(key, metadata);
+      case INSERT:
+        if (columnCount == 0)
+          return new SqlTemplate("INSERT INTO " + table + " DEFAULT VALUES", params);
+        sql.append("INSERT INTO ").append(table).append(" (");
+        for (int i = key.columns.nextSetBit(0); i >= 0; i = key.columns.nextSetBit(i + 1)) {
+          if (j > 0)
+            sql.append(',');
+          sql.append(properties[i].column);
+          params[j++] = properties[i];
+        }
+        sql.append(") VALUES ");
+        for (int row = 0; row < key.rows; row++) {
+          sql.append(row == 0 ? "(" : ",(");
+          for (int i = 0; i < j; i++)
+            sql.append(i == 0 ? "?" : ",?");
+          sql.append(')');
+        }
+        return new SqlTemplate(sql.toString(), params);
+      case UPDATE:
+        sql.append("UPDATE ").append(table).append(" SET ");
+        for (int i = key.columns.nextSetBit(0); i >= 0; i = key.columns.nextSetBit(i + 1)) {
+          if (j > 0)
+            sql.append(", ");
+          sql.append(properties[i].column).append(" = ?");
+          params[j++] = properties[i];
+        }
+        break;
+      case DELETE:
+        sql.append("DELETE FROM ").append(table);
+        break;
+      case SELECT:
+        sql.append("SELECT * FROM ").append(table);
+        break;
+      case EXISTS:
+        sql.append("SELECT 1 FROM ").append(table);
+        break;
+      default:
+        throw new IllegalArgumentException(String.valueOf(key.kind));
+    }
+
+    String and = " WHERE ";
+    for (int i = key.keys.nextSetBit(0); i >= 0; i = key.keys.nextSetBit(i + 1)) {
+      sql.append(and).append(properties[i].column).append(" = ?");
+      params[j++] = properties[i];
+      and = " AND ";
+    }
+
+    return new SqlTemplate(sql.toString(), params);
+  }
+
+  // INSERT ... ON CONFLICT (keys) DO UPDATE SET c = EXCLUDED.c, parameters are
+  // the inserted columns
+  private static SqlTemplate buildOnConflict(Key key, EntityMetadata metadata) {
+
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    EntityMetadata.Property[] params = new EntityMetadata.Property[key.columns.cardinality()];
+    StringBuilder sql = new StringBuilder(96 + 32 * properties.length);
+    StringBuilder values = new StringBuilder(2 * params.length);
+    StringBuilder set = new StringBuilder();
+    int j = 0;
+
+    sql.append("INSERT INTO ").append(metadata.getTable()).append(" (");
+    for (int i = key.columns.nextSetBit(0); i >= 0; i = key.columns.nextSetBit(i + 1)) {
+      if (j > 0) {
+        sql.append(',');
+        values.append(',');
+      }
+      sql.append(properties[i].column);
+      values.append('?');
+      params[j++] = properties[i];
+      if (!key.keys.get(i))
+        set.append(set.length() == 0 ? "" : ", ").append(properties[i].column).append(" = EXCLUDED.")
+            .append(properties[i].column);
+    }
+    sql.append(") VALUES (").append(values).append(") ON CONFLICT (");
+    String comma = "";
+    for (int i = key.keys.nextSetBit(0); i >= 0; i = key.keys.nextSetBit(i + 1)) {
+      sql.append(comma).append(properties[i].column);
+      comma = ",";
+    }
+    sql.append(set.length() == 0 ? ") DO NOTHING" : ") DO UPDATE SET ").append(set);
+
+    return new SqlTemplate(sql.toString(), params);
+  }
+
+  // MERGE with a one-row source; keys are bound in the ON clause and the values
+  // in the UPDATE and INSERT branches, so parameter types come from the target
+  // columns
+  private static SqlTemplate buildMerge(Key key, EntityMetadata metadata) {
+
+    EntityMetadata.Property[] properties = metadata.getProperties();
+    // keys, non-key columns, all columns
+    EntityMetadata.Property[] params = new EntityMetadata.Property[2 * key.columns.cardinality()];
+    StringBuilder sql = new StringBuilder(128 + 48 * properties.length);
+    int j = 0;
+
+    sql.append("MERGE INTO ").append(metadata.getTable());
+    switch (key.vendor) {
+      case SchemaUtil.MSSQL:
+        sql.append(" WITH (HOLDLOCK) t USING (SELECT 1 AS one) AS s");
+        break;
+      case SchemaUtil.ORACLE:
+        sql.append(" t USING DUAL");
+        break;
+      default:
+        sql.append(" t USING (VALUES(1)) AS s(one)");
+    }
+
+    String and = " ON (";
+    for (int i = key.keys.nextSetBit(0); i >= 0; i = key.keys.nextSetBit(i + 1)) {
+      sql.append(and).append("t.").append(properties[i].column).append(" = ?");
+      params[j++] = properties[i];
+      and = " AND ";
+    }
+    sql.append(')');
+
+    String set = " WHEN MATCHED THEN UPDATE SET ";
+    for (int i = key.columns.nextSetBit(0); i >= 0; i = key.columns.nextSetBit(i + 1))
+      if (!key.keys.get(i)) {
+        sql.append(set).append(properties[i].column).append(" = ?");
+        params[j++] = properties[i];
+        set = ", ";
+      }
+
+    sql.append(" WHEN NOT MATCHED THEN INSERT (");
+    int first = j;
+    for (int i = key.columns.nextSetBit(0); i >= 0; i = key.columns.nextSetBit(i + 1)) {
+      if (j > first)
+        sql.append(',');
+      sql.append(properties[i].column);
+      params[j++] = properties[i];
+    }
+    sql.append(") VALUES (");
+    for (int i = first; i < j; i++)
+      sql.append(i == first ? "?" : ",?");
+    sql.append(')');
+    if (key.vendor == SchemaUtil.MSSQL)
+      sql.append(';');
+
+    return new SqlTemplate(sql.toString(), params);
+  }
+
+  /**
+   * Keyset pagination: the rows of a query after a key in the order of the
+   * order columns, at most <code>limit</code>. The query is wrapped as a derived
+   * table, so it may have its own WHERE clause but no ORDER BY.
+   *
+   * @param orderBy output columns of the query, optionally followed by
+   *                <code>ASC</code> or <code>DESC</code>
+   * @param seek    rows after a key, bound by {@link #pageParams}
+   */
+  static String page(int vendor, String query, String[] orderBy, boolean seek, int limit) {
+
+    StringBuilder sql = new StringBuilder(query.length() + 64 + 32 * orderBy.length);
+    sql.append("SELECT ");
+    if (vendor == SchemaUtil.MSSQL)
+      sql.append("TOP (").append(limit).append(") ");
+    sql.append("* FROM (").append(query).append(") jlynx_page");
+
+    if (seek && isRowValueSeek(vendor, orderBy)) {
+      // (a, b) > (?, ?), one index range scan on PostgreSQL
+      sql.append(" WHERE (");
+      for (int i = 0; i < orderBy.length; i++)
+        sql.append(i == 0 ? "" : ", ").append(orderColumn(orderBy[i]));
+      sql.append(isDescending(orderBy[0]) ? ") < (" : ") > (");
+      for (int i = 0; i < orderBy.length; i++)
+        sql.append(i == 0 ? "?" : ", ?");
+      sql.append(')');
+    } else if (seek) {
+      // a > ? OR (a = ? AND b > ?) ...
+      sql.append(" WHERE ");
+      for (int i = 0; i < orderBy.length; i++) {
+        sql.append(i == 0 ? "(" : " OR (");
+        for (int j = 0; j < i; j++)
+          sql.append(orderColumn(orderBy[j])).append(" = ? AND ");
+        sql.append(orderColumn(orderBy[i])).append(isDescending(orderBy[i]) ? " < ?)" : " > ?)");
+      }
+    }
+
+    sql.append(" ORDER BY ");
+    for (int i = 0; i < orderBy.length; i++)
+      sql.append(i == 0 ? "" : ", ").append(orderColumn(orderBy[i])).append(isDescending(orderBy[i]) ? " DESC" : "");
+
+    if (vendor == SchemaUtil.POSTGRESQL || vendor == SchemaUtil.HSQLDB)
+      sql.append(" LIMIT ").append(limit);
+    else if (vendor != SchemaUtil.MSSQL)
+      sql.append(" FETCH FIRST ").append(limit).append(" ROWS ONLY");
+    return sql.toString();
+  }
+
+  /**
+   * @return the query parameters followed by the key values in the order of the
+   *         placeholders of {@link #page}
+   */
+  static Object[] pageParams(int vendor, String[] orderBy, Object[] params, Object[] lastKey) {
+
+    List<Object> values = new ArrayList<>();
+    if (params != null)
+      values.addAll(Arrays.asList(params));
+    if (lastKey == null)
+      return values.toArray();
+
+    if (isRowValueSeek(vendor, orderBy))
+      values.addAll(Arrays.asList(lastKey));
+    else
+      for (int i = 0; i < orderBy.length; i++)
+        for (int j = 0; j <= i; j++)
+          values.add(lastKey[j]);
+    return values.toArray();
+  }
+
+  // row value comparison where supported and all columns sort the same way
+  private static boolean isRowValueSeek(int vendor, String[] orderBy) {
+    if (vendor != SchemaUtil.POSTGRESQL || orderBy.length < 2)
+      return false;
+    for (String column : orderBy)
+      if (isDescending(column) != isDescending(orderBy[0]))
+        return false;
+    return true;
+  }
+
+  /**
+   * @return the column name of an order column, without ASC or DESC
+   */
+  static String orderColumn(String orderBy) {
+    String column = orderBy.trim();
+    int space = column.lastIndexOf(' ');
+    if (space > 0) {
+      String direction = column.substring(space + 1);
+      if (direction.equalsIgnoreCase("ASC") || direction.equalsIgnoreCase("DESC"))
+        column = column.substring(0, space).trim();
+    }
+    return column;
+  }
+
+  private static boolean isDescending(String orderBy) {
+    String column = orderBy.trim();
+    return column.length() > 5 && column.regionMatches(true, column.length() - 5, " DESC", 0, 5);
+  }
+
+  private static final class Key {
+
+    private final char kind;
+    private final Class<?> type;
+    private final int vendor;
+    private final BitSet columns;
+    private final BitSet keys;
+    private final int rows;
+    private final int hash;
+
+    private Key(char kind, Class<?> type, int vendor, BitSet columns, BitSet keys, int rows) {
+      this.kind = kind;
+      this.type = type;
+      this.vendor = vendor;
+      this.columns = columns;
+      this.keys = keys;
+      this.rows = rows;
+      int h = kind;
+      h = 31 * h + type.hashCode();
+      h = 31 * h + vendor;
+      h = 31 * h + (columns == null ? 0 : columns.hashCode());
+      h = 31 * h + rows;
+      this.hash = 31 * h + (keys == null ? 0 : keys.hashCode());
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return kind == other.kind && type == other.type && vendor == other.vendor && rows == other.rows
+          && (columns == null ? other.columns == null : columns.equals(other.columns))
+          && (keys == null ? other.keys == null : keys.equals(other.keys));
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+package com.github.jlynx;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * LRU cache of open PreparedStatements for one physical connection, keyed by
+ * SQL text, result set type and concurrency. A statement is removed from the
+ * cache while in use and returned by {@link #release(PreparedStatement)}, so
+ * the same SQL can be prepared twice on one connection (e.g. nested queries).
+ * Like the connection itself, a cache must not be used by two threads at once.
+ */
+final class StatementCache {
+
+  /**
+   * Counters shared by all caches of one connection source.
+   */
+  static final class Counters {
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+  }
+
+  private static final class Key {
+
+    private final String sql;
+    private final int type;
+    private final int concurrency;
+
+    private Key(String sql, int type, int concurrency) {
+      this.sql = sql;
+      this.type = type;
+      this.concurrency = concurrency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key))
+        return false;
+      Key key = (Key) o;
+      return type == key.type && concurrency == key.concurrency && sql.equals(key.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return sql.hashCode() * 31 + type * 7 + concurrency;
+    }
+  }
+
+  private final Connection connection;
+  private final int maxSize;
+  private final Counters counters;
+  private final LinkedHashMap<Key, PreparedStatement> idle;
+  private final Map<PreparedStatement, Key> inUse = new IdentityHashMap<>();
+
+  StatementCache(Connection connection, int maxSize, Counters counters) {
+    this.connection = connection;
+    this.maxSize = maxSize;
+    this.counters = counters;
+    this.idle = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  PreparedStatement prepare(String sql) throws SQLException {
+    return prepare(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+  }
+
+  PreparedStatement prepare(String sql, int type, int concurrency) throws SQLException {
+    Key key = new Key(sql, type, concurrency);
+    PreparedStatement ps = idle.remove(key);
+    if (ps == null || ps.isClosed()) {
+      counters.misses.increment();
+      ps = connection.prepareStatement(sql, type, concurrency);
+    } else
+      counters.hits.increment();
+    inUse.put(ps, key);
+    return ps;
+  }
+
+  /**
+   * Returns a statement obtained from {@link #prepare(String, int, int)};
+   * statements not from this cache, or that cannot be reset, are closed.
+   */
+  void release(PreparedStatement ps) throws SQLException {
+
+    Key key = inUse.remove(ps);
+    if (key == null || idle.containsKey(key)) {
+      ps.close();
+      return;
+    }
+
+    try {
+      ps.clearParameters();
+      ps.clearBatch();
+      if (ps.getFetchSize() != 0)
+        ps.setFetchSize(0);
+    } catch (SQLException e) {
+      LoggerFactory.getLogger("jlynx").debug("#release - " + e.getMessage());
+      ps.close();
+      return;
+    }
+
+    idle.put(key, ps);
+    if (idle.size() > maxSize) {
+      Iterator<PreparedStatement> eldest = idle.values().iterator();
+      PreparedStatement evicted = eldest.next();
+      eldest.remove();
+      counters.evictions.increment();
+      closeQuietly(evicted);
+    }
+  }
+
+  /**
+   * Closes all idle statements, e.g. before the connection is closed.
+   */
+  void clear() {
+    for (PreparedStatement ps : idle.values())
+      closeQuietly(ps);
+    idle.clear();
+  }
+
+  int size() {
+    return idle.size();
+  }
+
+  private static void closeQuietly(PreparedStatement ps) {
+    try {
+      ps.close();
+    } catch (SQLException e) {
+      LoggerFactory.getLogger("jlynx").debug("#closeQuietly - " + e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+package com.github.jlynx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts text to a property type; resolved once per type and cached, so no
+ * reflection happens per value. Dates and timestamps accept epoch
+ * milliseconds or the JDBC escape / ISO format; booleans only
+ * <code>true</code>/<code>false</code> (any case) and <code>1</code>/
+ * <code>0</code>, other text is rejected.
+ */
+final class ValueParsers {
+
+  @FunctionalInterface
+  interface Parser {
+    Object parse(String value);
+  }
+
+  private final static Map<Class<?>, Parser> cache = new ConcurrentHashMap<>();
+  private final static Parser UNSUPPORTED = value -> {
+    throw new UnsupportedOperationException();
+  };
+
+  private ValueParsers() {
+  }
+
+  private static Boolean parseBoolean(String value) {
+    if ("1".equals(value) || "true".equalsIgnoreCase(value))
+      return Boolean.TRUE;
+    if ("0".equals(value) || "false".equalsIgnoreCase(value))
+      return Boolean.FALSE;
+    throw new IllegalArgumentException("Not a boolean: \"" + value + "\"");
+  }
+
+  /**
+   * @return parser for the type, or <code>null</code> if text cannot be
+   *         converted to it
+   */
+  static Parser of(Class<?> type) {
+    Parser parser = cache.get(type);
+    if (parser == null) {
+      parser = create(type);
+      cache.putIfAbsent(type, parser);
+    }
+    return parser == UNSUPPORTED ? null : parser;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Parser create(Class<?> type) {
+
+    if (type == String.class || type == Object.class)
+      return value -> value;
+    if (type == Integer.class || type == int.class)
+      return Integer::valueOf;
+    if (type == Long.class || type == long.class)
+      return Long::valueOf;
+    if (type == Short.class || type == short.class)
+      return Short::valueOf;
+    if (type == Byte.class || type == byte.class)
+      return Byte::valueOf;
+    if (type == Double.class || type == double.class)
+      return Double::valueOf;
+    if (type == Float.class || type == float.class)
+      return Float::valueOf;
+    if (type == Boolean.class || type == boolean.class)
+      return ValueParsers::parseBoolean;
+    if (type == Character.class || type == char.class)
+      return value -> value.charAt(0);
+    if (type == BigDecimal.class)
+      return BigDecimal::new;
+    if (type == BigInteger.class)
+      return BigInteger::new;
+    if (type == LocalDate.class)
+      return LocalDate::parse;
+    if (type == LocalDateTime.class)
+      return value -> LocalDateTime.parse(value.replace(' ', 'T'));
+    if (type == LocalTime.class)
+      return LocalTime::parse;
+    if (type == java.sql.Date.class)
+      return value -> isMillis(value) ? new java.sql.Date(Long.parseLong(value)) : java.sql.Date.valueOf(value);
+    if (type == Timestamp.class || type == java.util.Date.class)
+      return value -> isMillis(value) ? new Timestamp(Long.parseLong(value))
+          : Timestamp.valueOf(value.replace('T', ' '));
+    if (type == Time.class)
+      return Time::valueOf;
+    if (type == UUID.class)
+      return UUID::fromString;
+    if (type.isEnum())
+      return value -> Enum.valueOf((Class<? extends Enum>) type, value);
+
+    // any other type with a public String constructor or static valueOf(String)
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    MethodHandle handle = null;
+    try {
+      handle = lookup.findConstructor(type, MethodType.methodType(void.class, String.class));
+    } catch (ReflectiveOperationException e) {
+      try {
+        handle = lookup.findStatic(type, "valueOf", MethodType.methodType(type, String.class));
+      } catch (ReflectiveOperationException e1) {
+        // not convertible
+      }
+    }
+    if (handle == null)
+      return UNSUPPORTED;
+
+    final MethodHandle factory = handle.asType(MethodType.methodType(Object.class, String.class));
+    return value -> {
+      try {
+        return factory.invokeExact(value);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalArgumentException(e);
+      }
+    };
+  }
+
+  private static boolean isMillis(String value) {
+    for (int i = value.startsWith("-") ? 1 : 0; i < value.length(); i++)
+      if (!Character.isDigit(value.charAt(i)))
+        return false;
+    return !value.isEmpty() && !value.equals("-");
+  }
+
+}
@@ -0,0 +1,150 @@
+package com.githib.jlynx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.jlynx.DAO;
+import com.github.jlynx.DAOImpl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchTest {
+
+  private DAO dao;
+
+  @Before
+  public void beforeTestMethod() throws SQLException {
+    dao = DAOImpl.newInstance("jdbc:hsqldb:mem:batch", null);
+    dao.executeSql("CREATE TABLE PERSON (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+        + " NAME VARCHAR(40), AGE INT)", null);
+  }
+
+  @After
+  public void afterTestMethod() throws SQLException {
+    dao.executeSql("DROP TABLE PERSON", null);
+  }
+
+  @Test
+  public void insertAll() throws SQLException, ReflectiveOperationException {
+
+    List<Person> people = new ArrayList<>();
+    for (int i = 0; i < 25; i++)
+      people.add(new Person("person" + i, i % 2 == 0 ? i : null));
+
+    assertEquals(25, dao.insertAll(people, 10));
+    for (Person person : people)
+      assertNotNull(person.id);
+
+    assertEquals(25, dao.listOf(Person.class, "SELECT * FROM PERSON", null).size());
+    Person person = new Person();
+    person.id = people.get(3).id;
+    assertTrue(dao.setBean(person).select());
+    assertEquals("person3", person.name);
+  }
+
+  @Test
+  public void updateAndDeleteAll() throws SQLException, ReflectiveOperationException {
+
+    List<Person> people = new ArrayList<>();
+    for (int i = 0; i < 5; i++)
+      people.add(new Person("person" + i, i));
+    assertEquals(5, dao.insertAll(people, 100));
+    // updateAll and deleteAll filter by the backfilled keys
+    for (Person person : people)
+      assertNotNull(person.id);
+
+    for (Person person : people)
+      person.age = person.age + 10;
+    assertArrayEquals(new int[] { 1, 1, 1, 1, 1 }, dao.updateAll(people));
+    assertEquals(5, dao.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE >= 10", null).size());
+
+    assertArrayEquals(new int[] { 1, 1 }, dao.deleteAll(people.subList(0, 2)));
+    assertEquals(1, dao.updateWhere(Person.class, Collections.singletonMap("name", "renamed"), "AGE = ?",
+        new Object[] { 14 }));
+    assertEquals(1, dao.listOf(Person.class, "SELECT * FROM PERSON WHERE NAME = 'renamed'", null).size());
+    assertEquals(3, dao.deleteWhere(Person.class, null, null));
+  }
+
+  @Test
+  public void insertValues() throws SQLException, ReflectiveOperationException {
+
+    List<Person> people = new ArrayList<>();
+    for (int i = 0; i < 2500; i++)
+      people.add(new Person("person" + i, i % 3 == 0 ? null : i));
+
+    assertEquals(2500, dao.insertValues(people));
+    assertEquals(2500, dao.listOf(Person.class, "SELECT * FROM PERSON", null).size());
+    assertEquals(834, dao.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE IS NULL", null).size());
+  }
+
+  @Test
+  public void saveAndSaveAll() throws SQLException, ReflectiveOperationException {
+
+    Person person = new Person("new", 1);
+    assertEquals(1, dao.setBean(person).save());
+    assertNotNull(person.id);
+
+    person.age = 2;
+    assertEquals(1, dao.setBean(person).save());
+    Person known = new Person("known", 3);
+    known.id = 100;
+    assertEquals(1, dao.setBean(known).save());
+
+    person.age = 4;
+    known.age = 5;
+    Person added = new Person("added", 6);
+    assertEquals(3, dao.saveAll(Arrays.asList(person, known, added)));
+    assertNotNull(added.id);
+
+    List<Person> people = dao.listOf(Person.class, "SELECT * FROM PERSON ORDER BY AGE", null);
+    assertEquals(3, people.size());
+    assertEquals(Integer.valueOf(4), people.get(0).age);
+    assertEquals(Integer.valueOf(5), people.get(1).age);
+    assertEquals("added", people.get(2).name);
+  }
+
+  @Test
+  public void trackChanges() throws SQLException, ReflectiveOperationException {
+
+    Person person = new Person("tracked", 30);
+    dao.setBean(person).insert();
+
+    Person loaded = new Person();
+    loaded.id = person.id;
+    assertTrue(dao.trackChanges(true).setBean(loaded).select());
+
+    // changed behind the bean's back, not overwritten by update()
+    dao.executeSql("UPDATE PERSON SET AGE = 31 WHERE ID = ?", new Object[] { person.id });
+    loaded.name = "changed";
+    assertEquals(1, dao.setBean(loaded).update());
+    // nothing changed, only checked for existence
+    assertEquals(1, dao.setBean(loaded).update());
+
+    Person check = dao.listOf(Person.class, "SELECT * FROM PERSON WHERE ID = ?", new Object[] { person.id }).get(0);
+    assertEquals("changed", check.name);
+    assertEquals(Integer.valueOf(31), check.age);
+
+    check.age = null;
+    assertArrayEquals(new int[] { 1 }, dao.updateAll(Collections.singletonList(check)));
+    assertArrayEquals(new int[] { 1 }, dao.updateAll(Collections.singletonList(check)));
+    assertTrue(dao.trackChanges(false).setBean(loaded).select());
+    assertEquals(null, loaded.age);
+
+    // nothing changed, but the row is gone
+    assertTrue(dao.trackChanges(true).setBean(loaded).select());
+    dao.executeSql("DELETE FROM PERSON WHERE ID = ?", new Object[] { person.id });
+    assertEquals(0, dao.setBean(loaded).update());
+    assertArrayEquals(new int[] { 0 }, dao.updateAll(Collections.singletonList(loaded)));
+  }
+
+}
@@ -0,0 +1,100 @@
+package com.githib.jlynx.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import com.github.jlynx.ConnectionPool;
+import com.github.jlynx.DAO;
+import com.github.jlynx.DAOImpl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+  private ConnectionPool pool;
+
+  @Before
+  public void beforeTestMethod() {
+    pool = ConnectionPool.newInstance("jdbc:hsqldb:mem:pool", null).maxSize(2).waitTimeout(200);
+  }
+
+  @After
+  public void afterTestMethod() {
+    pool.close();
+  }
+
+  @Test
+  public void reuseAndTimeout() throws SQLException {
+
+    Connection c1 = pool.getConnection();
+    c1.setAutoCommit(false);
+    Connection c2 = pool.getConnection();
+    try {
+      pool.getConnection();
+      fail("pool is exhausted");
+    } catch (SQLTimeoutException e) {
+      assertEquals(1, pool.getStatistics().getTimeouts());
+    }
+
+    c1.close();
+    assertTrue(c1.isClosed());
+    Connection c3 = pool.getConnection();
+    assertTrue(c3.getAutoCommit());
+    // closing a statement's connection returns the pooled connection
+    Statement stmt = c3.createStatement();
+    assertSame(c3, stmt.getConnection());
+    stmt.close();
+    stmt.getConnection().close();
+    assertTrue(c3.isClosed());
+    c2.close();
+
+    ConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(2, stats.getCreated());
+    assertEquals(0, stats.getDestroyed());
+    assertEquals(3, stats.getBorrowed());
+    assertEquals(0, stats.getActive());
+    assertEquals(2, stats.getIdle());
+  }
+
+  @Test
+  public void daoUsesPool() throws SQLException {
+
+    DAO dao = DAOImpl.newInstance(pool);
+    dao.executeSql("CREATE TABLE PERSON (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+        + " NAME VARCHAR(40), AGE INT)", null);
+    for (int i = 0; i < 10; i++)
+      dao.setBean(new Person("person" + i, i)).insert();
+    dao.executeSql("DROP TABLE PERSON", null);
+
+    assertEquals(1, pool.getStatistics().getCreated());
+    assertFalse(pool.getStatistics().getBorrowed() < 12);
+  }
+
+  @Test
+  public void statementCache() throws Exception {
+
+    pool.statementCacheSize(1);
+    DAO dao = DAOImpl.newInstance(pool);
+    dao.executeSql("CREATE TABLE PERSON (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+        + " NAME VARCHAR(40), AGE INT)", null);
+    dao.setBean(new Person("person", 40)).insert();
+    for (int i = 0; i < 3; i++)
+      assertEquals(1, dao.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE = ?", new Object[] { 40 }).size());
+    dao.executeSql("DROP TABLE PERSON", null);
+
+    ConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(2, stats.getStatementHits());
+    assertTrue(stats.getStatementEvictions() > 0);
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.githib.jlynx.test;
+
+import com.github.jlynx.Cached;
+import com.github.jlynx.Id;
+import com.github.jlynx.Table;
+
+@Table("COUNTRY")
+@Cached(maxSize = 2)
+public class Country {
+
+  @Id
+  public String code;
+  public String name;
+
+  public Country() {
+  }
+
+  public Country(String code, String name) {
+    this.code = code;
+    this.name = name;
+  }
+
+}
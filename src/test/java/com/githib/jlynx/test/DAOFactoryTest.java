@@ -0,0 +1,258 @@
+package com.githib.jlynx.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.github.jlynx.AsyncDAO;
+import com.github.jlynx.Cursor;
+import com.github.jlynx.DAOFactory;
+import com.github.jlynx.DAOListener;
+import com.github.jlynx.DAOStatistics;
+import com.github.jlynx.EntityCache;
+import com.github.jlynx.Page;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DAOFactoryTest {
+
+  // a new in-memory database per test, pooled connections and schema are not
+  // shared between tests
+  private static final AtomicInteger databases = new AtomicInteger();
+
+  private DAOFactory factory;
+
+  @Before
+  public void beforeTestMethod() throws SQLException {
+    factory = DAOFactory.newInstance("jdbc:hsqldb:mem:factory" + databases.incrementAndGet(), null);
+    factory.executeSql("CREATE TABLE PERSON (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+        + " NAME VARCHAR(40), AGE INT)", null);
+  }
+
+  @After
+  public void afterTestMethod() throws SQLException {
+    factory.executeSql("DROP TABLE PERSON", null);
+  }
+
+  @Test
+  public void concurrentUse() throws Exception {
+
+    // table and keys are known before the first thread starts
+    factory.warmUp(Person.class);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      final int age = i;
+      results.add(executor.submit(() -> {
+        Person person = new Person("person" + age, age);
+        factory.insert(person);
+        Person copy = new Person();
+        copy.id = person.id;
+        return factory.select(copy) && copy.age == age;
+      }));
+    }
+    for (Future<Boolean> result : results)
+      assertTrue(result.get());
+    executor.shutdown();
+
+    assertEquals(200, factory.listOf(Person.class, "SELECT * FROM PERSON", null).size());
+  }
+
+  @Test
+  public void warmUpAndSnapshot() throws Exception {
+
+    factory.executeSql("CREATE TABLE FRUIT (ID INT PRIMARY KEY, NAME VARCHAR(40))", null);
+    factory.warmUp(Person.class, Fruit.class);
+    factory.warmUp("com.githib.jlynx.test");
+
+    Path file = Files.createTempFile("jlynx", ".properties");
+    try {
+      DAOFactory.saveSnapshot(file);
+      assertTrue(new String(Files.readAllBytes(file), "UTF-8").contains("FRUIT"));
+      DAOFactory.loadSnapshot(file);
+    } finally {
+      Files.delete(file);
+      factory.executeSql("DROP TABLE FRUIT", null);
+    }
+  }
+
+  @Test
+  public void entityCache() throws Exception {
+
+    factory.executeSql("CREATE TABLE COUNTRY (CODE CHAR(2) PRIMARY KEY, NAME VARCHAR(40))", null);
+    try {
+      factory.insertValues(Arrays.asList(new Country("CA", "Canada"), new Country("FR", "France"),
+          new Country("JP", "Japan")));
+      EntityCache cache = EntityCache.of(Country.class);
+
+      Country country = new Country("CA", null);
+      assertTrue(factory.select(country));
+      assertTrue(factory.select(country = new Country("CA", null)));
+      assertEquals("Canada", country.name);
+      assertEquals(1, cache.getStatistics().getHits());
+
+      // not seen by the cache
+      try (Connection conn = factory.getConnection(); Statement stmt = conn.createStatement()) {
+        stmt.executeUpdate("UPDATE COUNTRY SET NAME = 'Kanada' WHERE CODE = 'CA'");
+      }
+      factory.select(country = new Country("CA", null));
+      assertEquals("Canada", country.name);
+
+      // invalidated
+      factory.update(new Country("CA", "Canada!"));
+      factory.select(country = new Country("CA", null));
+      assertEquals("Canada!", country.name);
+
+      factory.select(new Country("FR", null));
+      factory.select(new Country("JP", null));
+      assertEquals(2, cache.getStatistics().getSize());
+      assertEquals(1, cache.getStatistics().getEvictions());
+
+      factory.delete(new Country("JP", null));
+      assertFalse(factory.select(new Country("JP", null)));
+    } finally {
+      factory.executeSql("DROP TABLE COUNTRY", null);
+    }
+  }
+
+  @Test
+  public void async() throws Exception {
+
+    try (AsyncDAO async = AsyncDAO.newVirtualThreadInstance(factory, 4)) {
+      List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+      for (int i = 0; i < 20; i++)
+        inserts.add(async.insert(new Person("async" + i, i)));
+      CompletableFuture.allOf(inserts.toArray(new CompletableFuture<?>[0])).get();
+
+      CompletableFuture<List<Person>> people = async.listOf(Person.class, "SELECT * FROM PERSON", null);
+      CompletableFuture<Integer> count = async.executeSql("UPDATE PERSON SET AGE = AGE + 1", null);
+      assertEquals(20, people.get().size());
+      assertEquals(Integer.valueOf(20), count.get());
+
+      try {
+        async.executeSql("SELECT * FROM MISSING", null).get();
+        assertTrue(false);
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof SQLException);
+      }
+    }
+
+    Executor direct = Runnable::run;
+    Person person = new Person("direct", 1);
+    AsyncDAO.newInstance(factory, direct).insert(person).get();
+    assertNotNull(person.id);
+  }
+
+  @Test
+  public void listeners() throws Exception {
+
+    DAOStatistics stats = new DAOStatistics();
+    List<String> failed = new ArrayList<>();
+    DAOListener failures = event -> {
+      if (event.getFailure() != null)
+        failed.add(event.getOperation());
+    };
+    DAOListener.register(stats);
+    DAOListener.register(failures);
+    try {
+      for (int i = 0; i < 10; i++)
+        factory.insert(new Person("listener" + i, i));
+      assertEquals(5, factory.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE < 5", null).size());
+      try {
+        factory.executeSql("SELECT * FROM MISSING", null);
+        assertTrue(false);
+      } catch (SQLException e) {
+        assertEquals(Arrays.asList("executeSql"), failed);
+      }
+    } finally {
+      DAOListener.unregister(stats);
+      DAOListener.unregister(failures);
+    }
+
+    DAOStatistics.Statement query = stats.getStatement("SELECT * FROM PERSON WHERE AGE < 7");
+    assertNotNull(query);
+    assertEquals(1, query.getCount());
+    assertEquals(5, query.getRows());
+    assertTrue(query.getPercentileMillis(50) <= query.getMaxMillis());
+
+    long inserts = 0;
+    for (DAOStatistics.Statement statement : stats.getStatements())
+      if (statement.getSql().startsWith("INSERT INTO PERSON"))
+        inserts += statement.getCount();
+    assertEquals(10, inserts);
+
+    // no longer registered
+    factory.insert(new Person("unregistered", 1));
+    assertEquals(3, stats.getStatements().size());
+  }
+
+  @Test
+  public void flightRecorder() throws Exception {
+
+    Path file = Files.createTempFile("jlynx", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("jlynx.Operation");
+      recording.enable("jlynx.ResultMapping");
+      recording.start();
+      factory.insert(new Person("recorded", 1));
+      factory.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE = 1", null);
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<String> events = new ArrayList<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(file))
+      if (event.getEventType().getName().equals("jlynx.Operation"))
+        events.add(event.getString("operation") + " " + event.getString("table") + " " + event.getLong("rows"));
+      else if (event.getEventType().getName().equals("jlynx.ResultMapping"))
+        assertEquals(1, event.getLong("rows"));
+    Files.delete(file);
+    assertEquals(Arrays.asList("insert PERSON 1", "listOf PERSON 1"), events);
+  }
+
+  @Test
+  public void pages() throws Exception {
+
+    List<Person> people = new ArrayList<>();
+    for (int i = 0; i < 25; i++)
+      people.add(new Person("page" + i, i));
+    factory.insertAll(people, 25);
+
+    List<Integer> sizes = new ArrayList<>();
+    try (Cursor<Page<Person>> pages = factory.pages(Person.class, "SELECT * FROM PERSON", null,
+        new String[] { "ID" }, 10)) {
+      while (pages.hasNext())
+        sizes.add(pages.next().getItems().size());
+    }
+    assertEquals(Arrays.asList(10, 10, 5), sizes);
+
+    try (Cursor<Page<Person>> pages = factory.pages(Person.class, "SELECT * FROM PERSON WHERE AGE < 0", null,
+        new String[] { "ID" }, 10)) {
+      assertFalse(pages.hasNext());
+    }
+  }
+
+}
@@ -0,0 +1,17 @@
+package com.githib.jlynx.test;
+
+import java.io.InputStream;
+
+import com.github.jlynx.Id;
+import com.github.jlynx.Table;
+
+@Table("DOCUMENT")
+public class Document {
+
+  @Id
+  public Integer id;
+  public String name;
+  public InputStream body;
+  public String text;
+
+}
@@ -0,0 +1,102 @@
+package com.githib.jlynx.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.jlynx.DAO;
+import com.github.jlynx.DAOImpl;
+import com.github.jlynx.Format;
+import com.github.jlynx.Importer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImportExportTest {
+
+  private DAO dao;
+  private Path file;
+
+  @Before
+  public void beforeTestMethod() throws Exception {
+    dao = DAOImpl.newInstance("jdbc:hsqldb:mem:file", null);
+    dao.executeSql("CREATE TABLE PERSON (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+        + " NAME VARCHAR(40), AGE INT)", null);
+    file = Files.createTempFile("jlynx", ".txt");
+  }
+
+  @After
+  public void afterTestMethod() throws Exception {
+    dao.executeSql("DROP TABLE PERSON", null);
+    Files.delete(file);
+  }
+
+  @Test
+  public void importCsv() throws Exception {
+
+    StringBuilder csv = new StringBuilder("NAME,AGE\r\n");
+    for (int i = 0; i < 250; i++)
+      csv.append("\"person, ").append(i).append("\",").append(i % 2 == 0 ? String.valueOf(i) : "").append("\r\n");
+    Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+    AtomicLong reported = new AtomicLong();
+    long rows = Importer.of(dao, Person.class, Format.CSV).batchSize(100)
+        .progress((count, rate) -> reported.set(count)).run(file);
+
+    assertEquals(250, rows);
+    assertEquals(250, reported.get());
+    List<Person> people = dao.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE IS NULL", null);
+    assertEquals(125, people.size());
+    assertTrue(people.get(0).name.startsWith("person, "));
+  }
+
+  @Test
+  public void importJsonLines() throws Exception {
+
+    Files.write(file, ("{\"name\": \"a \\\"quoted\\\" name\", \"age\": 30}\n\n{\"NAME\": \"b\", \"AGE\": null}\n")
+        .getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(2, Importer.of(dao, Person.class, Format.JSON_LINES).run(file));
+    List<Person> people = dao.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE = 30", null);
+    assertEquals("a \"quoted\" name", people.get(0).name);
+
+    Files.write(file,
+        "{\"name\": \"\\u00e9\", \"age\": 31}\n{\"name\": \"\\u1X00\"}\n".getBytes(StandardCharsets.UTF_8));
+    try {
+      Importer.of(dao, Person.class, Format.JSON_LINES).batchSize(1).run(file);
+      assertTrue(false);
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("line 2"));
+    }
+    assertEquals("\u00e9", dao.listOf(Person.class, "SELECT * FROM PERSON WHERE AGE = 31", null).get(0).name);
+  }
+
+  @Test
+  public void exportAndImport() throws Exception {
+
+    for (int i = 0; i < 20; i++)
+      dao.setBean(new Person("person \"" + i + "\", \u00e9", i)).insert();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(20, dao.export(null, "SELECT NAME, AGE FROM PERSON ORDER BY ID", null, out, Format.CSV));
+    String csv = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(csv.startsWith("NAME,AGE\r\n\"person \"\"0\"\", \u00e9\",0\r\n"));
+
+    out.reset();
+    assertEquals(20, dao.export(Person.class, "SELECT * FROM PERSON", null, out, Format.JSON_LINES));
+    Files.write(file, out.toByteArray());
+    dao.deleteWhere(Person.class, null, null);
+    assertEquals(20, Importer.of(dao, Person.class, Format.JSON_LINES).run(file));
+    assertEquals(1, dao.listOf(Person.class, "SELECT * FROM PERSON WHERE NAME = ?",
+        new Object[] { "person \"7\", \u00e9" }).size());
+  }
+
+}
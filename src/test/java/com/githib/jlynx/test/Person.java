@@ -0,0 +1,22 @@
+package com.githib.jlynx.test;
+
+import com.github.jlynx.Id;
+import com.github.jlynx.Table;
+
+@Table("PERSON")
+public class Person {
+
+  @Id
+  public Integer id;
+  public String name;
+  public Integer age;
+
+  public Person() {
+  }
+
+  public Person(String name, Integer age) {
+    this.name = name;
+    this.age = age;
+  }
+
+}
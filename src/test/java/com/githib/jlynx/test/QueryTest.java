@@ -0,0 +1,190 @@
+package com.githib.jlynx.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.github.jlynx.Cursor;
+import com.github.jlynx.DAO;
+import com.github.jlynx.DAOImpl;
+import com.github.jlynx.Page;
+import com.github.jlynx.QueryCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryTest {
+
+  private DAO dao;
+
+  @Before
+  public void beforeTestMethod() throws SQLException {
+    dao = DAOImpl.newInstance("jdbc:hsqldb:mem:query", null);
+    dao.executeSql("CREATE TABLE PERSON (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+        + " NAME VARCHAR(40), AGE INT)", null);
+    List<Person> people = new ArrayList<>();
+    for (int i = 0; i < 100; i++)
+      people.add(new Person("person" + i, i));
+    dao.insertAll(people, 50);
+  }
+
+  @After
+  public void afterTestMethod() throws SQLException {
+    dao.executeSql("DROP TABLE PERSON", null);
+  }
+
+  @Test
+  public void stream() throws SQLException, ReflectiveOperationException {
+    try (Stream<Person> people = dao.fetchSize(10).stream(Person.class, "SELECT * FROM PERSON WHERE AGE < ?",
+        new Object[] { 50 })) {
+      assertEquals(1225, people.mapToInt(p -> p.age).sum());
+    }
+  }
+
+  @Test
+  public void cursor() throws SQLException, ReflectiveOperationException {
+    try (Cursor<Person> people = dao.cursor(Person.class, "SELECT * FROM PERSON ORDER BY AGE", null)) {
+      assertTrue(people.hasNext());
+      assertEquals("person0", people.next().name);
+      assertEquals("person1", people.next().name);
+    }
+    // the DAO is still usable after the cursor took its connection
+    assertEquals(100, dao.listOf(Person.class, "SELECT * FROM PERSON", null).size());
+  }
+
+  @Test
+  public void forEach() throws SQLException, ReflectiveOperationException {
+    AtomicInteger sum = new AtomicInteger();
+    assertEquals(100, dao.forEach(Person.class, "SELECT * FROM PERSON", null, p -> sum.addAndGet(p.age)));
+    assertEquals(4950, sum.get());
+
+    List<Person> seen = new ArrayList<>();
+    dao.forEach(Person.class, "SELECT * FROM PERSON", null, true, seen::add);
+    assertEquals(100, seen.size());
+    assertSame(seen.get(0), seen.get(99));
+    assertFalse(seen.get(0).name == null);
+  }
+
+  @Test
+  public void resultCache() throws SQLException, ReflectiveOperationException {
+
+    final String sql = "SELECT * FROM PERSON WHERE AGE < ? ORDER BY AGE";
+    long hits = QueryCache.getStatistics().getHits();
+    List<Person> first = dao.cacheResults(60).listOf(Person.class, sql, new Object[] { 10 });
+    List<Person> second = dao.listOf(Person.class, sql, new Object[] { 10 });
+    assertEquals(10, second.size());
+    assertEquals(hits + 1, QueryCache.getStatistics().getHits());
+    assertNotSame(first.get(0), second.get(0));
+
+    try {
+      second.clear();
+      assertTrue(false);
+    } catch (UnsupportedOperationException e) {
+      // cached results are read-only
+    }
+    second.get(0).name = "changed";
+    assertEquals("person0", dao.listOf(Person.class, sql, new Object[] { 10 }).get(0).name);
+
+    // writes to PERSON invalidate
+    Person person = dao.listOf(Person.class, sql, new Object[] { 10 }).get(0);
+    person.name = "updated";
+    dao.setBean(person).update();
+    assertEquals("updated", dao.listOf(Person.class, sql, new Object[] { 10 }).get(0).name);
+  }
+
+  @Test
+  public void page() throws SQLException, ReflectiveOperationException {
+
+    final String sql = "SELECT * FROM PERSON WHERE AGE >= ?";
+    final Object[] params = { 10 };
+    List<Person> seen = new ArrayList<>();
+    Page<Person> page = dao.page(Person.class, sql, params, new String[] { "ID" }, null, 40);
+    seen.addAll(page.getItems());
+    while (page.hasNext()) {
+      page = dao.page(Person.class, sql, params, new String[] { "ID" }, page.getNextKey(), 40);
+      seen.addAll(page.getItems());
+    }
+    assertEquals(90, seen.size());
+    assertEquals(10, page.getItems().size());
+    for (int i = 1; i < seen.size(); i++)
+      assertTrue(seen.get(i - 1).id < seen.get(i).id);
+
+    String[] byAge = { "AGE DESC", "ID DESC" };
+    page = dao.page(Person.class, sql, params, byAge, null, 5);
+    assertEquals(Integer.valueOf(99), page.getItems().get(0).age);
+    page = dao.page(Person.class, sql, params, byAge, page.getNextKey(), 5);
+    assertEquals(Integer.valueOf(94), page.getItems().get(0).age);
+  }
+
+  @Test
+  public void lobs() throws Exception {
+
+    byte[] pdf = new byte[100000];
+    for (int i = 0; i < pdf.length; i++)
+      pdf[i] = (byte) i;
+    Path file = Files.createTempFile("jlynx", ".pdf");
+    Files.write(file, pdf);
+
+    dao.executeSql("CREATE TABLE DOCUMENT (ID INT PRIMARY KEY, NAME VARCHAR(40), BODY BLOB, TEXT CLOB)", null);
+    try {
+      final String insert = "INSERT INTO DOCUMENT VALUES (?, ?, ?, ?)";
+      dao.executeSql(insert, new Object[] { 1, "file", file, new StringReader("from a file") });
+      dao.executeSql(insert, new Object[] { 2, "buffer", ByteBuffer.wrap(pdf), "from a buffer" });
+      Files.delete(file);
+
+      List<byte[]> bodies = new ArrayList<>();
+      dao.forEach(Document.class, "SELECT * FROM DOCUMENT ORDER BY ID", null, d -> bodies.add(readAll(d.body)));
+      assertEquals(2, bodies.size());
+      assertArrayEquals(pdf, bodies.get(0));
+      assertArrayEquals(pdf, bodies.get(1));
+
+      // read in full, the streams outlive the query (HSQLDB's would as well)
+      List<Document> documents = dao.listOf(Document.class, "SELECT * FROM DOCUMENT ORDER BY ID", null);
+      assertEquals("from a file", documents.get(0).text);
+      assertTrue(documents.get(1).body instanceof ByteArrayInputStream);
+      assertArrayEquals(pdf, readAll(documents.get(1).body));
+      Document document = new Document();
+      document.id = 1;
+      assertTrue(dao.setBean(document).select());
+      assertArrayEquals(pdf, readAll(document.body));
+
+      documents = dao.skipLobs(true).listOf(Document.class, "SELECT * FROM DOCUMENT ORDER BY ID", null);
+      assertEquals("buffer", documents.get(1).name);
+      assertNull(documents.get(1).text);
+    } finally {
+      dao.skipLobs(false).executeSql("DROP TABLE DOCUMENT", null);
+    }
+  }
+
+  private static byte[] readAll(InputStream in) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try {
+      for (int n; (n = in.read(buffer)) > 0;)
+        out.write(buffer, 0, n);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return out.toByteArray();
+  }
+
+}